@@ -1,57 +1,202 @@
 package org.fanchuo.avroexcel.cli;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Callable;
 import org.apache.avro.Schema;
 import org.fanchuo.avroexcel.ExcelToAvroConverter;
+import org.fanchuo.avroexcel.FileConversionResult;
+import org.fanchuo.avroexcel.ImportOptions;
+import org.fanchuo.avroexcel.ImportResult;
+import org.fanchuo.avroexcel.SheetConversionResult;
+import org.fanchuo.avroexcel.SheetMapping;
 import picocli.CommandLine;
 
 @CommandLine.Command(name = "AvroExcel", version = "1.0.0", mixinStandardHelpOptions = true)
-public class AvroExcel implements Callable<Void> {
+public class AvroExcel implements Callable<Integer> {
 
   @CommandLine.Option(
       names = {"-i"},
-      description = "Input file",
-      required = true)
-  private File inputFile;
+      description = "Input file, several files are merged into the output",
+      required = true,
+      arity = "1..*")
+  private List<File> inputFiles;
 
   @CommandLine.Option(
       names = {"-o"},
-      description = "Output file",
-      required = true)
+      description = "Output file")
   private File outputFile;
 
   @CommandLine.Option(
       names = {"-s"},
-      description = "Schema file")
+      description = "Schema file, by default the one saved in the workbook by the export")
   private File schemaFile;
 
   @CommandLine.Option(
       names = {"-c"},
-      description = "Origin column in Excel",
-      defaultValue = "0")
-  private int col;
+      description = "Origin column in Excel, by default the one saved in the workbook")
+  private Integer col;
 
   @CommandLine.Option(
       names = {"-r"},
-      description = "Origin row in Excel",
-      defaultValue = "0")
-  private int row;
+      description = "Origin row in Excel, by default the one saved in the workbook")
+  private Integer row;
 
   @CommandLine.Option(
       names = {"-t"},
       description = "Origin tab in Excel")
   private String tab;
 
+  // the parts of a mapping are separate options, so the regex and the paths may hold any character
+  static class SheetMappingOptions {
+    @CommandLine.Option(
+        names = {"-m"},
+        description =
+            "Sheet mapping, every tab matching this regex is converted in one load (repeatable)",
+        required = true)
+    private String sheetRegex;
+
+    @CommandLine.Option(
+        names = {"--sheet-schema"},
+        description = "Schema file of the tabs matched by the previous -m",
+        required = true)
+    private File schemaFile;
+
+    @CommandLine.Option(
+        names = {"--sheet-output"},
+        description = "Output file of the tabs matched by the previous -m, {sheet} is the tab name",
+        required = true)
+    private String outputFile;
+  }
+
+  @CommandLine.ArgGroup(exclusive = false, multiplicity = "0..*")
+  private List<SheetMappingOptions> sheetMappings = new ArrayList<>();
+
+  @CommandLine.Option(
+      names = {"-j"},
+      description = "Worker threads, 0 for one per core",
+      defaultValue = "0")
+  private int threads;
+
+  @CommandLine.Option(
+      names = {"-b"},
+      description = "Roll to a new part once it holds this many bytes, -o is then a directory",
+      defaultValue = "0")
+  private long partBytes;
+
+  @CommandLine.Option(
+      names = {"-n"},
+      description = "Roll to a new part once it holds this many records, -o is then a directory",
+      defaultValue = "0")
+  private long partRecords;
+
+  @CommandLine.Option(
+      names = {"-u"},
+      description = "Skip the columns that have no field in the schema")
+  private boolean skipUnmappedColumns;
+
+  @CommandLine.Option(
+      names = {"-e"},
+      description = "Re-evaluate formulas instead of reading the results saved in the workbook")
+  private boolean evaluateFormulas;
+
   public static void main(String[] args) {
     int exitCode = new CommandLine(new AvroExcel()).execute(args);
     System.exit(exitCode);
   }
 
   @Override
-  public Void call() throws Exception {
+  public Integer call() throws Exception {
+    ImportOptions importOptions =
+        new ImportOptions()
+            .withSkipUnmappedColumns(skipUnmappedColumns)
+            .withEvaluateFormulas(evaluateFormulas);
+    if (!sheetMappings.isEmpty()) return convertSheets(importOptions);
+    if (outputFile == null) throw new IllegalArgumentException("Missing required option: '-o'");
+    // a single workbook exported by AvroToExcel carries its schema and origin
+    boolean savedSchema = schemaFile == null && col == null && row == null;
+    if (savedSchema && inputFiles.size() == 1 && partBytes == 0 && partRecords == 0) {
+      ImportResult result =
+          ExcelToAvroConverter.convert(inputFiles.get(0), outputFile, tab, importOptions);
+      reportSkipped(result.skippedColumns);
+      return 0;
+    }
+    if (schemaFile == null) throw new IllegalArgumentException("Missing required option: '-s'");
     Schema schema = new Schema.Parser().parse(schemaFile);
-    ExcelToAvroConverter.convert(inputFile, outputFile, tab, col, row, schema);
-    return null;
+    if (inputFiles.size() > 1) return convertMany(schema, importOptions);
+    if (partBytes > 0 || partRecords > 0) {
+      ImportResult result =
+          ExcelToAvroConverter.convertRolling(
+              inputFiles.get(0),
+              outputFile,
+              tab,
+              col(),
+              row(),
+              schema,
+              partBytes,
+              partRecords,
+              importOptions);
+      System.out.printf(
+          "%d record(s) in %d part(s)%n", result.recordCount, result.manifest.getEntries().size());
+      reportSkipped(result.skippedColumns);
+      return 0;
+    }
+    ImportResult result =
+        ExcelToAvroConverter.convert(
+            inputFiles.get(0), outputFile, tab, col(), row(), schema, importOptions);
+    reportSkipped(result.skippedColumns);
+    return 0;
+  }
+
+  private static void reportSkipped(List<String> skippedColumns) {
+    if (!skippedColumns.isEmpty())
+      System.out.printf("Skipped columns without a schema field: %s%n", skippedColumns);
+  }
+
+  private int col() {
+    return col == null ? 0 : col;
+  }
+
+  private int row() {
+    return row == null ? 0 : row;
+  }
+
+  private int convertMany(Schema schema, ImportOptions importOptions) throws IOException {
+    List<FileConversionResult> results =
+        ExcelToAvroConverter.convertMany(
+            inputFiles, outputFile, tab, col(), row(), schema, threads, importOptions);
+    int failures = 0;
+    for (FileConversionResult result : results) {
+      System.out.println(result);
+      if (!result.isSuccess()) failures++;
+    }
+    System.out.printf("%d file(s) converted, %d failed%n", results.size() - failures, failures);
+    return failures == 0 ? 0 : 1;
+  }
+
+  private int convertSheets(ImportOptions importOptions) throws IOException {
+    if (inputFiles.size() > 1)
+      throw new IllegalArgumentException("Sheet mappings apply to a single input file");
+    List<SheetMapping> mappings = new ArrayList<>();
+    for (SheetMappingOptions sheetMapping : sheetMappings) {
+      mappings.add(parseMapping(sheetMapping));
+    }
+    List<SheetConversionResult> results =
+        ExcelToAvroConverter.convertSheets(
+            inputFiles.get(0), mappings, col(), row(), threads, importOptions);
+    int failures = 0;
+    for (SheetConversionResult result : results) {
+      System.out.println(result);
+      if (!result.isSuccess()) failures++;
+    }
+    System.out.printf("%d sheet(s) converted, %d failed%n", results.size() - failures, failures);
+    return failures == 0 ? 0 : 1;
+  }
+
+  private static SheetMapping parseMapping(SheetMappingOptions sheetMapping) throws IOException {
+    Schema schema = new Schema.Parser().parse(sheetMapping.schemaFile);
+    return SheetMapping.forPattern(sheetMapping.sheetRegex, schema, sheetMapping.outputFile);
   }
 }
@@ -0,0 +1,119 @@
+package org.fanchuo.avroexcel.cli;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import org.apache.avro.Schema;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.fanchuo.avroexcel.AvroToExcelConverter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import picocli.CommandLine;
+
+class AvroExcelTest {
+  private static final Path DIR = Path.of("build", "test-output");
+  private static final String SCHEMA =
+      "{\"type\": \"record\", \"name\": \"User\", \"fields\": ["
+          + "{\"name\": \"name\", \"type\": \"string\"},"
+          + " {\"name\": \"color\", \"type\": \"string\"}]}";
+
+  @BeforeEach
+  void setUp() throws IOException {
+    if (Files.exists(DIR)) {
+      try (Stream<Path> paths = Files.walk(DIR)) {
+        boolean result =
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).allMatch(File::delete);
+        if (!result) throw new IOException("Failed to delete directory");
+      }
+    }
+    Files.createDirectories(DIR);
+  }
+
+  // a workbook with the tabs red and blue, holding 2 and 1 users
+  private static File workbook(Schema schema) throws IOException {
+    File avroFile = DIR.resolve("users.avro").toFile();
+    try (DataFileWriter<GenericRecord> writer =
+        new DataFileWriter<>(new GenericDatumWriter<GenericRecord>(schema))) {
+      writer.create(schema, avroFile);
+      String[][] users = {{"Alyssa", "red"}, {"Ben", "blue"}, {"Charlie", "red"}};
+      for (String[] user : users) {
+        GenericRecord record = new GenericData.Record(schema);
+        record.put("name", user[0]);
+        record.put("color", user[1]);
+        writer.append(record);
+      }
+    }
+    File excelFile = DIR.resolve("users.xlsx").toFile();
+    AvroToExcelConverter.convertPartitioned(avroFile, excelFile, "color", 4, 1, 2);
+    return excelFile;
+  }
+
+  private static List<String> names(File avroFile) throws IOException {
+    List<String> names = new ArrayList<>();
+    try (DataFileReader<GenericRecord> reader =
+        new DataFileReader<>(avroFile, new GenericDatumReader<>())) {
+      for (GenericRecord record : reader) {
+        names.add(record.get("name").toString());
+      }
+    }
+    return names;
+  }
+
+  @Test
+  void sheetMappings() throws IOException {
+    Schema schema = new Schema.Parser().parse(SCHEMA);
+    File excelFile = workbook(schema);
+    File schemaFile = DIR.resolve("user.avsc").toFile();
+    Files.writeString(schemaFile.toPath(), SCHEMA);
+
+    // '=' and ',' in the regex and the output path are taken as they are
+    int exitCode =
+        new CommandLine(new AvroExcel())
+            .execute(
+                "-i",
+                excelFile.getPath(),
+                "-c",
+                "1",
+                "-r",
+                "2",
+                "-m",
+                "red|a=b,c",
+                "--sheet-schema",
+                schemaFile.getPath(),
+                "--sheet-output",
+                DIR.resolve("{sheet}=x,y.avro").toString(),
+                "-m",
+                "blue",
+                "--sheet-schema",
+                schemaFile.getPath(),
+                "--sheet-output",
+                DIR.resolve("blue.avro").toString());
+
+    assertEquals(0, exitCode);
+    assertEquals(List.of("Alyssa", "Charlie"), names(DIR.resolve("red=x,y.avro").toFile()));
+    assertEquals(List.of("Ben"), names(DIR.resolve("blue.avro").toFile()));
+  }
+
+  @Test
+  void incompleteSheetMapping() throws IOException {
+    File excelFile = workbook(new Schema.Parser().parse(SCHEMA));
+
+    int exitCode =
+        new CommandLine(new AvroExcel())
+            .execute("-i", excelFile.getPath(), "-m", "red", "--sheet-schema", "user.avsc");
+
+    assertEquals(CommandLine.ExitCode.USAGE, exitCode);
+  }
+}
@@ -6,4 +6,3 @@ dependencies {
     implementation("org.apache.avro:avro:1.12.1")
     implementation("org.apache.poi:poi-ooxml:5.4.1")
 }
-
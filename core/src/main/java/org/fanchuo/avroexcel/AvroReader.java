@@ -4,6 +4,7 @@ import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Iterator;
 import java.util.function.Consumer;
 import org.apache.avro.Schema;
 import org.apache.avro.data.TimeConversions;
@@ -12,10 +13,12 @@ import org.apache.avro.file.DataFileStream;
 import org.apache.avro.generic.GenericData;
 import org.apache.avro.generic.GenericDatumReader;
 import org.apache.avro.generic.GenericRecord;
+import org.fanchuo.avroexcel.parallel.RecordPublisher;
 
-public class AvroReader implements Closeable {
+public class AvroReader implements RecordPublisher.Source<GenericRecord> {
+  // a new instance each time: GenericData.get() is shared by every thread and library in the JVM
   public static GenericData makeGenericData() {
-    GenericData genericData = GenericData.get();
+    GenericData genericData = new GenericData();
     genericData.addLogicalTypeConversion(new TimeConversions.DateConversion());
     genericData.addLogicalTypeConversion(new TimeConversions.TimestampMillisConversion());
     genericData.addLogicalTypeConversion(new TimeConversions.TimeMicrosConversion());
@@ -30,6 +33,7 @@ public class AvroReader implements Closeable {
   private final Iterable<GenericRecord> iterable;
   private final Closeable closeable;
   private final Schema schema;
+  private Iterator<GenericRecord> iterator;
 
   public AvroReader(File avroFile) throws IOException {
     this(new DataFileReader<>(avroFile, new GenericDatumReader<>(null, null, makeGenericData())));
@@ -39,6 +43,49 @@ public class AvroReader implements Closeable {
     this(new DataFileStream<>(avroStream, new GenericDatumReader<>(null, null, makeGenericData())));
   }
 
+  public AvroReader(File avroFile, ExportOptions exportOptions) throws IOException {
+    this(new GenericDatumReader<>(null, null, makeGenericData()), avroFile, exportOptions);
+  }
+
+  public AvroReader(InputStream avroStream, ExportOptions exportOptions) throws IOException {
+    this(new GenericDatumReader<>(null, null, makeGenericData()), avroStream, exportOptions);
+  }
+
+  private AvroReader(
+      GenericDatumReader<GenericRecord> datumReader, File avroFile, ExportOptions exportOptions)
+      throws IOException {
+    this(datumReader, new DataFileReader<>(avroFile, datumReader), exportOptions);
+  }
+
+  private AvroReader(
+      GenericDatumReader<GenericRecord> datumReader,
+      InputStream avroStream,
+      ExportOptions exportOptions)
+      throws IOException {
+    this(datumReader, new DataFileStream<>(avroStream, datumReader), exportOptions);
+  }
+
+  private AvroReader(
+      GenericDatumReader<GenericRecord> datumReader,
+      DataFileStream<GenericRecord> dataFileStream,
+      ExportOptions exportOptions) {
+    this(
+        dataFileStream,
+        dataFileStream,
+        project(datumReader, dataFileStream.getSchema(), exportOptions));
+  }
+
+  // the resolving decoder then skips the fields left out of the reader schema
+  private static Schema project(
+      GenericDatumReader<GenericRecord> datumReader,
+      Schema writerSchema,
+      ExportOptions exportOptions) {
+    Schema readerSchema = exportOptions.readerSchema(writerSchema);
+    if (readerSchema == null) return writerSchema;
+    datumReader.setExpected(readerSchema);
+    return readerSchema;
+  }
+
   public AvroReader(DataFileStream<GenericRecord> dataFileStream) {
     this(dataFileStream, dataFileStream, dataFileStream.getSchema());
   }
@@ -55,6 +102,12 @@ public class AvroReader implements Closeable {
     }
   }
 
+  @Override
+  public GenericRecord read() {
+    if (this.iterator == null) this.iterator = this.iterable.iterator();
+    return this.iterator.hasNext() ? this.iterator.next() : null;
+  }
+
   @Override
   public void close() throws IOException {
     if (this.closeable != null) this.closeable.close();
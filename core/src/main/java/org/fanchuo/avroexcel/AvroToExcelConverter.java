@@ -4,59 +4,187 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.function.Consumer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
 import org.apache.avro.Schema;
 import org.apache.avro.generic.GenericRecord;
-import org.fanchuo.avroexcel.headerinfo.HeaderInfo;
-import org.fanchuo.avroexcel.headerinfo.HeaderInfoAvroSchemaReader;
-import org.fanchuo.avroexcel.recordgeometry.RecordGeometry;
-import org.fanchuo.avroexcel.recordgeometry.RecordGeometryAvroReader;
+import org.fanchuo.avroexcel.parallel.TaskOutcome;
+import org.fanchuo.avroexcel.parallel.TaskRunner;
 
 public class AvroToExcelConverter {
-  private static String makeSheetname(String sheetName) {
+  static String makeSheetname(String sheetName) {
     if (sheetName == null) return "tab";
     return sheetName;
   }
 
   public static void convert(File avroFile, File excelFile, String sheetName, int col, int row)
       throws IOException {
-    try (AvroReader avroReader = new AvroReader(avroFile);
-        WorkbookWriter workbookWriter = new WorkbookWriter(excelFile, makeSheetname(sheetName))) {
-      convert(col, row, avroReader, workbookWriter);
+    convert(avroFile, excelFile, sheetName, col, row, new ExportOptions());
+  }
+
+  public static void convert(
+      File avroFile,
+      File excelFile,
+      String sheetName,
+      int col,
+      int row,
+      ExportOptions exportOptions)
+      throws IOException {
+    try (AvroReader avroReader = new AvroReader(avroFile, exportOptions);
+        WorkbookWriter workbookWriter = new WorkbookWriter(excelFile)) {
+      SheetWriter sheetWriter = workbookWriter.createSheet(makeSheetname(sheetName));
+      convert(col, row, avroReader, sheetWriter, exportOptions);
     }
   }
 
   public static void convert(
       InputStream avroStream, OutputStream excelStream, String sheetName, int col, int row)
       throws IOException {
+    convert(avroStream, excelStream, sheetName, col, row, new ExportOptions());
+  }
+
+  public static void convert(
+      InputStream avroStream,
+      OutputStream excelStream,
+      String sheetName,
+      int col,
+      int row,
+      ExportOptions exportOptions)
+      throws IOException {
+    try (AvroReader avroReader = new AvroReader(avroStream, exportOptions);
+        WorkbookWriter workbookWriter = new WorkbookWriter(excelStream)) {
+      SheetWriter sheetWriter = workbookWriter.createSheet(makeSheetname(sheetName));
+      convert(col, row, avroReader, sheetWriter, exportOptions);
+    }
+  }
+
+  // records without a value at partitionPath go to the _missing sheet, and once maxSheets sheets
+  // are started the new values go to the _other sheet
+  public static int convertPartitioned(
+      File avroFile, File excelFile, String partitionPath, int maxSheets, int col, int row)
+      throws IOException {
+    try (AvroReader avroReader = new AvroReader(avroFile);
+        WorkbookWriter workbookWriter = new WorkbookWriter(excelFile)) {
+      return convertPartitioned(
+          col, row, avroReader, workbookWriter, FieldPath.parse(partitionPath), maxSheets);
+    }
+  }
+
+  public static int convertPartitioned(
+      InputStream avroStream,
+      OutputStream excelStream,
+      String partitionPath,
+      int maxSheets,
+      int col,
+      int row)
+      throws IOException {
     try (AvroReader avroReader = new AvroReader(avroStream);
-        WorkbookWriter workbookWriter = new WorkbookWriter(excelStream, makeSheetname(sheetName))) {
-      convert(col, row, avroReader, workbookWriter);
+        WorkbookWriter workbookWriter = new WorkbookWriter(excelStream)) {
+      return convertPartitioned(
+          col, row, avroReader, workbookWriter, FieldPath.parse(partitionPath), maxSheets);
+    }
+  }
+
+  public static long convertMerged(
+      List<File> avroFiles,
+      Schema readerSchema,
+      File excelFile,
+      String sheetName,
+      int col,
+      int row,
+      int threads)
+      throws IOException {
+    try (MergedAvroReader avroReader = new MergedAvroReader(avroFiles, readerSchema, threads);
+        WorkbookWriter workbookWriter = new WorkbookWriter(excelFile)) {
+      SheetExporter sheetExporter =
+          new SheetExporter(
+              workbookWriter.createSheet(makeSheetname(sheetName)),
+              avroReader.getSchema(),
+              col,
+              row);
+      sheetExporter.writeHeaders();
+      long recordCount = avroReader.process(sheetExporter);
+      sheetExporter.finish();
+      return recordCount;
+    }
+  }
+
+  public static Manifest convertSplit(
+      File avroFile,
+      File outputDir,
+      String sheetName,
+      int parts,
+      int col,
+      int row,
+      int threads)
+      throws IOException {
+    Files.createDirectories(outputDir.toPath());
+    MappedSeekableInput input = new MappedSeekableInput(avroFile);
+    int count = parts > 0 ? parts : TaskRunner.defaultThreads();
+    List<RangeExport> tasks = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      File excelFile = new File(outputDir, String.format("part-%05d.xlsx", i));
+      tasks.add(
+          new RangeExport(
+              input.duplicate(),
+              input.length() * i / count,
+              input.length() * (i + 1) / count,
+              excelFile,
+              makeSheetname(sheetName),
+              col,
+              row));
     }
+    List<TaskOutcome<Long>> outcomes = TaskRunner.runAll(tasks, threads);
+    Manifest manifest = new Manifest(Manifest.Unit.BYTE);
+    for (int i = 0; i < count; i++) {
+      long recordCount = outcomes.get(i).getOrThrow();
+      RangeExport task = tasks.get(i);
+      if (recordCount > 0)
+        manifest.add(task.excelFile.getName(), recordCount, task.startOffset, task.endOffset);
+    }
+    manifest.write(new File(outputDir, Manifest.FILE_NAME));
+    return manifest;
   }
 
   private static void convert(
-      int col, int row, AvroReader avroReader, WorkbookWriter workbookWriter) {
-    Schema schema = avroReader.getSchema();
-    HeaderInfo root = HeaderInfoAvroSchemaReader.visitSchema(null, schema);
-    workbookWriter.writeHeaders(col, row, root, row + root.rowSpan);
-    workbookWriter.color(col, row, root.colSpan, root.rowSpan, WorkbookWriter.Zone.HEADER);
-    avroReader.process(
-        new Consumer<>() {
-          WorkbookWriter.Zone zone = WorkbookWriter.Zone.ODD;
-          int idx = row + root.rowSpan;
-
-          @Override
-          public void accept(GenericRecord record) {
-            RecordGeometry recordGeometry = RecordGeometryAvroReader.visitRecord(record);
-            workbookWriter.color(col, idx, root.colSpan, recordGeometry.rowSpan, zone);
-            workbookWriter.writeRecord(
-                record, root, recordGeometry, col, idx, idx + recordGeometry.rowSpan, zone);
-            idx += recordGeometry.rowSpan;
-            if (zone == WorkbookWriter.Zone.EVEN) zone = WorkbookWriter.Zone.ODD;
-            else zone = WorkbookWriter.Zone.EVEN;
-          }
-        });
-    workbookWriter.finalize(col, root.colSpan);
+      int col,
+      int row,
+      AvroReader avroReader,
+      SheetWriter sheetWriter,
+      ExportOptions exportOptions) {
+    RecordFilter recordFilter = exportOptions.recordFilter(avroReader.getSchema());
+    sheetWriter.setExportOptions(exportOptions);
+    SheetExporter sheetExporter = new SheetExporter(sheetWriter, avroReader.getSchema(), col, row);
+    sheetExporter.writeHeaders();
+    long maxRecords = exportOptions.getMaxRecords();
+    int maxRows = exportOptions.getMaxRows();
+    // rejected records skip the geometry and the cells, the zebra zones follow the written ones
+    // once the limits are reached the following blocks of the file are never read
+    GenericRecord record;
+    while (!sheetExporter.isFull(maxRecords, maxRows) && (record = avroReader.read()) != null) {
+      if (recordFilter.test(record)) sheetExporter.accept(record);
+    }
+    sheetExporter.finish();
+  }
+
+  private static int convertPartitioned(
+      int col,
+      int row,
+      AvroReader avroReader,
+      WorkbookWriter workbookWriter,
+      FieldPath partitionPath,
+      int maxSheets)
+      throws IOException {
+    PartitionedExport partitionedExport =
+        new PartitionedExport(
+            workbookWriter, avroReader.getSchema(), col, row, partitionPath, maxSheets);
+    try {
+      avroReader.process(partitionedExport);
+      partitionedExport.finish();
+    } finally {
+      partitionedExport.abort();
+    }
+    return partitionedExport.getSheetCount();
   }
 }
@@ -0,0 +1,71 @@
+package org.fanchuo.avroexcel;
+
+// column widths from the longest formatted value of each column, counted in characters of the
+// default font instead of measuring every cell with AWT like Sheet.autoSizeColumn
+public class ColumnWidthEstimator {
+  // Excel caps a column at 255 characters
+  private static final int MAX_EXCEL_WIDTH = 255;
+
+  private double charWidth = 1.1;
+  private int padding = 2;
+  private int minWidth = 4;
+  private int maxWidth = 80;
+  private int sampleSize = 1000;
+
+  // width of an average character relative to the digits the column unit is based on
+  public ColumnWidthEstimator withCharWidth(double charWidth) {
+    this.charWidth = charWidth;
+    return this;
+  }
+
+  public ColumnWidthEstimator withPadding(int padding) {
+    this.padding = padding;
+    return this;
+  }
+
+  public ColumnWidthEstimator withMinWidth(int minWidth) {
+    this.minWidth = minWidth;
+    return this;
+  }
+
+  public ColumnWidthEstimator withMaxWidth(int maxWidth) {
+    this.maxWidth = maxWidth;
+    return this;
+  }
+
+  // values measured per column, the following ones are written without being measured
+  public ColumnWidthEstimator withSampleSize(int sampleSize) {
+    this.sampleSize = sampleSize;
+    return this;
+  }
+
+  int getSampleSize() {
+    return sampleSize;
+  }
+
+  // in 1/256th of a character, the unit of Sheet.setColumnWidth
+  int width(int maxLength) {
+    int chars = (int) Math.ceil(maxLength * this.charWidth) + this.padding;
+    chars = Math.min(Math.max(chars, this.minWidth), Math.min(this.maxWidth, MAX_EXCEL_WIDTH));
+    return chars * 256;
+  }
+
+  // length of the value as Excel displays it, the longest line for multi-line text
+  static int length(Object value) {
+    if (value instanceof Double || value instanceof Float) {
+      double d = ((Number) value).doubleValue();
+      if (d == Math.rint(d) && Math.abs(d) < 1e11) return Long.toString((long) d).length();
+      // the General format shows at most 11 characters for fractional numbers
+      return Math.min(String.valueOf(d).length(), 11);
+    }
+    if (value instanceof Boolean) return (Boolean) value ? 4 : 5;
+    String text = String.valueOf(value);
+    int longest = 0;
+    int start = 0;
+    for (int end = text.indexOf('\n'); end >= 0; end = text.indexOf('\n', start)) {
+      longest = Math.max(longest, end - start);
+      start = end + 1;
+    }
+    return Math.max(longest, text.length() - start);
+  }
+}
@@ -0,0 +1,69 @@
+package org.fanchuo.avroexcel;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericRecord;
+import org.fanchuo.avroexcel.encoder.ExcelSchemaException;
+import org.fanchuo.avroexcel.encoder.ExcelToAvro;
+import org.fanchuo.avroexcel.excelutil.ExcelSheetReader;
+import org.fanchuo.avroexcel.headerinfo.HeaderInfo;
+import org.fanchuo.avroexcel.headerinfo.HeaderInfoExcelReader;
+import org.fanchuo.avroexcel.parallel.RecordPublisher;
+
+// the workbook is loaded on the first read and dropped on close
+class ExcelRecordSource implements RecordPublisher.Source<GenericRecord> {
+  private final File excelFile;
+  private final String sheetName;
+  private final int col;
+  private final int row;
+  private final Schema schema;
+  private final ImportOptions importOptions;
+  private ExcelToAvro excelToAvro;
+  private boolean closed;
+
+  ExcelRecordSource(
+      File excelFile,
+      String sheetName,
+      int col,
+      int row,
+      Schema schema,
+      ImportOptions importOptions) {
+    this.excelFile = excelFile;
+    this.sheetName = sheetName;
+    this.col = col;
+    this.row = row;
+    this.schema = schema;
+    this.importOptions = importOptions;
+  }
+
+  @Override
+  public GenericRecord read() throws IOException, ExcelSchemaException {
+    if (this.closed) return null;
+    if (this.excelToAvro == null) {
+      ExcelSheetReader excelSheetReader;
+      try (InputStream is = new FileInputStream(this.excelFile)) {
+        excelSheetReader =
+            ExcelSheetReader.loadSheet(is, this.sheetName, this.importOptions.isEvaluateFormulas());
+      }
+      HeaderInfo headerInfo = HeaderInfoExcelReader.visitSheet(excelSheetReader, col, row);
+      this.excelToAvro =
+          new ExcelToAvro(
+              excelSheetReader,
+              schema,
+              headerInfo,
+              col,
+              row + headerInfo.rowSpan,
+              this.importOptions.isSkipUnmappedColumns());
+    }
+    return this.excelToAvro.readRecord();
+  }
+
+  @Override
+  public void close() {
+    this.closed = true;
+    this.excelToAvro = null;
+  }
+}
@@ -1,25 +1,51 @@
 package org.fanchuo.avroexcel;
 
 import java.io.*;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.stream.Stream;
 import org.apache.avro.Schema;
+import org.apache.avro.file.DataFileStream;
 import org.apache.avro.file.DataFileWriter;
 import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
 import org.apache.avro.generic.GenericDatumWriter;
 import org.apache.avro.generic.GenericRecord;
 import org.apache.avro.io.DatumWriter;
 import org.fanchuo.avroexcel.encoder.ExcelSchemaException;
 import org.fanchuo.avroexcel.encoder.ExcelToAvro;
 import org.fanchuo.avroexcel.excelutil.ExcelSheetReader;
+import org.fanchuo.avroexcel.excelutil.SheetMetadata;
 import org.fanchuo.avroexcel.headerinfo.HeaderInfo;
 import org.fanchuo.avroexcel.headerinfo.HeaderInfoExcelReader;
+import org.fanchuo.avroexcel.parallel.RecordPublisher;
+import org.fanchuo.avroexcel.parallel.TaskOutcome;
+import org.fanchuo.avroexcel.parallel.TaskRunner;
 
 public class ExcelToAvroConverter {
   public static void convert(
       File excelFile, File avroFile, String sheetName, int col, int row, Schema schema)
       throws IOException, ExcelSchemaException {
+    convert(excelFile, avroFile, sheetName, col, row, schema, new ImportOptions());
+  }
+
+  public static ImportResult convert(
+      File excelFile,
+      File avroFile,
+      String sheetName,
+      int col,
+      int row,
+      Schema schema,
+      ImportOptions importOptions)
+      throws IOException, ExcelSchemaException {
     try (InputStream is = new FileInputStream(excelFile);
         OutputStream os = new FileOutputStream(avroFile)) {
-      convert(is, os, sheetName, col, row, schema);
+      return convert(is, os, sheetName, col, row, schema, importOptions);
     }
   }
 
@@ -31,18 +57,392 @@ public class ExcelToAvroConverter {
       int row,
       Schema schema)
       throws IOException, ExcelSchemaException {
-    ExcelSheetReader excelSheetReader = ExcelSheetReader.loadSheet(inputStream, sheetName);
+    convert(inputStream, avroOutputStream, sheetName, col, row, schema, new ImportOptions());
+  }
+
+  public static ImportResult convert(
+      InputStream inputStream,
+      OutputStream avroOutputStream,
+      String sheetName,
+      int col,
+      int row,
+      Schema schema,
+      ImportOptions importOptions)
+      throws IOException, ExcelSchemaException {
+    ExcelSheetReader excelSheetReader =
+        ExcelSheetReader.loadSheet(inputStream, sheetName, importOptions.isEvaluateFormulas());
+    return convert(excelSheetReader, avroOutputStream, col, row, schema, importOptions);
+  }
+
+  // the schema and origin are the ones saved in the workbook by AvroToExcelConverter
+  public static void convert(File excelFile, File avroFile, String sheetName)
+      throws IOException, ExcelSchemaException {
+    convert(excelFile, avroFile, sheetName, new ImportOptions());
+  }
+
+  public static ImportResult convert(
+      File excelFile, File avroFile, String sheetName, ImportOptions importOptions)
+      throws IOException, ExcelSchemaException {
+    try (InputStream is = new FileInputStream(excelFile);
+        OutputStream os = new FileOutputStream(avroFile)) {
+      return convert(is, os, sheetName, importOptions);
+    }
+  }
+
+  public static ImportResult convert(
+      InputStream inputStream,
+      OutputStream avroOutputStream,
+      String sheetName,
+      ImportOptions importOptions)
+      throws IOException, ExcelSchemaException {
+    ExcelSheetReader excelSheetReader =
+        ExcelSheetReader.loadSheet(inputStream, sheetName, importOptions.isEvaluateFormulas());
+    SheetMetadata metadata = savedMetadata(excelSheetReader);
+    return convert(
+        excelSheetReader,
+        avroOutputStream,
+        metadata.col,
+        metadata.row,
+        metadata.schema,
+        importOptions);
+  }
+
+  // records [fromRecord, toRecord) of an exported sheet, its record index skips most of the rows
+  // before fromRecord
+  public static List<GenericRecord> readRange(
+      File excelFile, String sheetName, long fromRecord, long toRecord)
+      throws IOException, ExcelSchemaException {
+    return readRange(excelFile, sheetName, fromRecord, toRecord, new ImportOptions());
+  }
+
+  public static List<GenericRecord> readRange(
+      File excelFile,
+      String sheetName,
+      long fromRecord,
+      long toRecord,
+      ImportOptions importOptions)
+      throws IOException, ExcelSchemaException {
+    ExcelSheetReader excelSheetReader = loadSheet(excelFile, sheetName, importOptions);
+    SheetMetadata metadata = savedMetadata(excelSheetReader);
+    HeaderInfo headerInfo =
+        HeaderInfoExcelReader.visitSheet(excelSheetReader, metadata.col, metadata.row);
+    ExcelToAvro excelToAvro =
+        new ExcelToAvro(
+            excelSheetReader,
+            metadata.schema,
+            headerInfo,
+            metadata.col,
+            metadata.row + headerInfo.rowSpan,
+            importOptions.isSkipUnmappedColumns());
+    List<GenericRecord> records = new ArrayList<>();
+    if (!excelToAvro.seek(fromRecord)) return records;
+    for (long i = fromRecord; i < toRecord; i++) {
+      GenericRecord record = excelToAvro.readRecord();
+      if (record == null) break;
+      records.add(record);
+    }
+    return records;
+  }
+
+  private static SheetMetadata savedMetadata(ExcelSheetReader excelSheetReader)
+      throws ExcelSchemaException {
+    SheetMetadata metadata;
+    try {
+      metadata = excelSheetReader.getMetadata();
+    } catch (IllegalStateException e) {
+      throw new ExcelSchemaException(e.getMessage());
+    }
+    if (metadata == null)
+      throw new ExcelSchemaException(
+          "No schema saved in the workbook for this sheet, the schema and origin must be given");
+    return metadata;
+  }
+
+  public static Stream<GenericRecord> stream(
+      File excelFile, String sheetName, int col, int row, Schema schema) throws IOException {
+    return stream(excelFile, sheetName, col, row, schema, new ImportOptions());
+  }
+
+  public static Stream<GenericRecord> stream(
+      File excelFile,
+      String sheetName,
+      int col,
+      int row,
+      Schema schema,
+      ImportOptions importOptions)
+      throws IOException {
+    ExcelSheetReader excelSheetReader = loadSheet(excelFile, sheetName, importOptions);
     HeaderInfo headerInfo = HeaderInfoExcelReader.visitSheet(excelSheetReader, col, row);
+    return new ExcelToAvro(
+            excelSheetReader,
+            schema,
+            headerInfo,
+            col,
+            row + headerInfo.rowSpan,
+            importOptions.isSkipUnmappedColumns())
+        .stream();
+  }
+
+  private static ExcelSheetReader loadSheet(
+      File excelFile, String sheetName, ImportOptions importOptions) throws IOException {
+    try (InputStream is = new FileInputStream(excelFile)) {
+      return ExcelSheetReader.loadSheet(is, sheetName, importOptions.isEvaluateFormulas());
+    }
+  }
+
+  // the manifest of the result reports the sheet rows each part was read from
+  public static ImportResult convertRolling(
+      File excelFile,
+      File outputDir,
+      String sheetName,
+      int col,
+      int row,
+      Schema schema,
+      long maxBytes,
+      long maxRecords)
+      throws IOException, ExcelSchemaException {
+    return convertRolling(
+        excelFile,
+        outputDir,
+        sheetName,
+        col,
+        row,
+        schema,
+        maxBytes,
+        maxRecords,
+        new ImportOptions());
+  }
+
+  public static ImportResult convertRolling(
+      File excelFile,
+      File outputDir,
+      String sheetName,
+      int col,
+      int row,
+      Schema schema,
+      long maxBytes,
+      long maxRecords,
+      ImportOptions importOptions)
+      throws IOException, ExcelSchemaException {
+    ExcelSheetReader excelSheetReader = loadSheet(excelFile, sheetName, importOptions);
+    Files.createDirectories(outputDir.toPath());
+    HeaderInfo headerInfo = HeaderInfoExcelReader.visitSheet(excelSheetReader, col, row);
+    ExcelToAvro excelToAvro =
+        new ExcelToAvro(
+            excelSheetReader,
+            schema,
+            headerInfo,
+            col,
+            row + headerInfo.rowSpan,
+            importOptions.isSkipUnmappedColumns());
+    try (RollingAvroWriter rollingAvroWriter =
+        new RollingAvroWriter(outputDir, schema, maxBytes, maxRecords)) {
+      int recordRow = excelToAvro.getRow();
+      GenericRecord record;
+      while ((record = excelToAvro.readRecord()) != null) {
+        rollingAvroWriter.append(record, recordRow, excelToAvro.getRow());
+        recordRow = excelToAvro.getRow();
+      }
+      Manifest manifest = rollingAvroWriter.finish(recordRow);
+      return new ImportResult(manifest.getRecordCount(), excelToAvro.getSkippedColumns(), manifest);
+    }
+  }
+
+  public static Flow.Publisher<GenericRecord> publisher(
+      File excelFile, String sheetName, int col, int row, Schema schema, Executor executor) {
+    return publisher(excelFile, sheetName, col, row, schema, executor, new ImportOptions());
+  }
+
+  public static Flow.Publisher<GenericRecord> publisher(
+      File excelFile,
+      String sheetName,
+      int col,
+      int row,
+      Schema schema,
+      Executor executor,
+      ImportOptions importOptions) {
+    return new RecordPublisher<>(
+        new ExcelRecordSource(excelFile, sheetName, col, row, schema, importOptions), executor);
+  }
+
+  public static List<SheetConversionResult> convertSheets(
+      File excelFile, List<SheetMapping> mappings, int col, int row, int threads)
+      throws IOException {
+    return convertSheets(excelFile, mappings, col, row, threads, new ImportOptions());
+  }
+
+  // the workbook is loaded once and its sheets are converted in parallel: only the copy of the
+  // rows of each record is made under the workbook lock, the sheets decode and encode their
+  // records at the same time
+  public static List<SheetConversionResult> convertSheets(
+      File excelFile,
+      List<SheetMapping> mappings,
+      int col,
+      int row,
+      int threads,
+      ImportOptions importOptions)
+      throws IOException {
+    Map<String, ExcelSheetReader> sheets;
+    try (InputStream is = new FileInputStream(excelFile)) {
+      sheets =
+          ExcelSheetReader.loadSheets(
+              is, name -> findMapping(mappings, name) != null, importOptions.isEvaluateFormulas());
+    }
+    List<String> sheetNames = new ArrayList<>();
+    List<File> outputFiles = new ArrayList<>();
+    List<Callable<ImportResult>> tasks = new ArrayList<>();
+    Map<File, String> claimedOutputs = new HashMap<>();
+    for (Map.Entry<String, ExcelSheetReader> entry : sheets.entrySet()) {
+      String sheetName = entry.getKey();
+      SheetMapping mapping = findMapping(mappings, sheetName);
+      File outputFile = mapping.outputFor(sheetName);
+      String other = claimedOutputs.put(outputFile.getAbsoluteFile(), sheetName);
+      if (other != null)
+        throw new IllegalArgumentException(
+            String.format(
+                "Sheets '%s' and '%s' would both be written to %s, add %s to the output",
+                other, sheetName, outputFile, SheetMapping.SHEET_PLACEHOLDER));
+      sheetNames.add(sheetName);
+      outputFiles.add(outputFile);
+      tasks.add(
+          () -> convert(entry.getValue(), outputFile, col, row, mapping.schema, importOptions));
+    }
+    List<TaskOutcome<ImportResult>> outcomes = TaskRunner.runAll(tasks, threads);
+    List<SheetConversionResult> results = new ArrayList<>();
+    for (int i = 0; i < outcomes.size(); i++) {
+      TaskOutcome<ImportResult> outcome = outcomes.get(i);
+      results.add(
+          new SheetConversionResult(
+              sheetNames.get(i), outputFiles.get(i), outcome.value, outcome.error));
+    }
+    return results;
+  }
+
+  // each workbook is decoded to its own temporary file, the blocks are then copied in input order
+  public static List<FileConversionResult> convertMany(
+      List<File> excelFiles,
+      File avroFile,
+      String sheetName,
+      int col,
+      int row,
+      Schema schema,
+      int threads)
+      throws IOException {
+    return convertMany(
+        excelFiles, avroFile, sheetName, col, row, schema, threads, new ImportOptions());
+  }
+
+  public static List<FileConversionResult> convertMany(
+      List<File> excelFiles,
+      File avroFile,
+      String sheetName,
+      int col,
+      int row,
+      Schema schema,
+      int threads,
+      ImportOptions importOptions)
+      throws IOException {
+    Path tempDir = Files.createTempDirectory("avroexcel");
+    try {
+      List<File> partFiles = new ArrayList<>();
+      List<Callable<ImportResult>> tasks = new ArrayList<>();
+      for (File excelFile : excelFiles) {
+        File partFile = tempDir.resolve("part-" + partFiles.size() + ".avro").toFile();
+        partFiles.add(partFile);
+        tasks.add(
+            () ->
+                convert(
+                    loadSheet(excelFile, sheetName, importOptions),
+                    partFile,
+                    col,
+                    row,
+                    schema,
+                    importOptions));
+      }
+      List<TaskOutcome<ImportResult>> outcomes = TaskRunner.runAll(tasks, threads);
+      List<FileConversionResult> results = new ArrayList<>();
+      DatumWriter<GenericRecord> datumWriter =
+          new GenericDatumWriter<>(schema, AvroReader.makeGenericData());
+      try (DataFileWriter<GenericRecord> dataFileWriter = new DataFileWriter<>(datumWriter)) {
+        dataFileWriter.create(schema, avroFile);
+        for (int i = 0; i < outcomes.size(); i++) {
+          TaskOutcome<ImportResult> outcome = outcomes.get(i);
+          if (outcome.isSuccess()) {
+            try (InputStream is = new FileInputStream(partFiles.get(i));
+                DataFileStream<GenericRecord> part =
+                    new DataFileStream<>(is, new GenericDatumReader<>())) {
+              dataFileWriter.appendAllFrom(part, false);
+            }
+          }
+          results.add(new FileConversionResult(excelFiles.get(i), outcome.value, outcome.error));
+        }
+      }
+      return results;
+    } finally {
+      deleteTempDir(tempDir);
+    }
+  }
+
+  private static void deleteTempDir(Path tempDir) throws IOException {
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(tempDir)) {
+      for (Path path : stream) {
+        Files.deleteIfExists(path);
+      }
+    }
+    Files.delete(tempDir);
+  }
+
+  private static SheetMapping findMapping(List<SheetMapping> mappings, String sheetName) {
+    for (SheetMapping mapping : mappings) {
+      if (mapping.matches(sheetName)) return mapping;
+    }
+    return null;
+  }
+
+  private static ImportResult convert(
+      ExcelSheetReader excelSheetReader,
+      File avroFile,
+      int col,
+      int row,
+      Schema schema,
+      ImportOptions importOptions)
+      throws IOException, ExcelSchemaException {
+    try (OutputStream os = new FileOutputStream(avroFile)) {
+      return convert(excelSheetReader, os, col, row, schema, importOptions);
+    }
+  }
+
+  private static ImportResult convert(
+      ExcelSheetReader excelSheetReader,
+      OutputStream avroOutputStream,
+      int col,
+      int row,
+      Schema schema,
+      ImportOptions importOptions)
+      throws IOException, ExcelSchemaException {
+    HeaderInfo headerInfo;
+    synchronized (excelSheetReader.getWorkbookLock()) {
+      headerInfo = HeaderInfoExcelReader.visitSheet(excelSheetReader, col, row);
+    }
     ExcelToAvro excelToAvro =
-        new ExcelToAvro(excelSheetReader, schema, headerInfo, col, row + headerInfo.rowSpan);
+        new ExcelToAvro(
+            excelSheetReader,
+            schema,
+            headerInfo,
+            col,
+            row + headerInfo.rowSpan,
+            importOptions.isSkipUnmappedColumns());
     GenericRecord record;
+    long recordCount = 0;
     GenericData genericData = AvroReader.makeGenericData();
     DatumWriter<GenericRecord> datumWriter = new GenericDatumWriter<>(schema, genericData);
     try (DataFileWriter<GenericRecord> dataFileWriter = new DataFileWriter<>(datumWriter)) {
       dataFileWriter.create(schema, avroOutputStream);
       while ((record = excelToAvro.readRecord()) != null) {
         dataFileWriter.append(record);
+        recordCount++;
       }
     }
+    return new ImportResult(recordCount, excelToAvro.getSkippedColumns());
   }
 }
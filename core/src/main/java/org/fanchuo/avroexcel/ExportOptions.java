@@ -0,0 +1,212 @@
+package org.fanchuo.avroexcel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.apache.avro.Schema;
+
+public class ExportOptions {
+  public enum StringStrategy {
+    // every string goes to the shared strings table of the workbook, the default
+    SHARED,
+    // strings are stored in their cell
+    INLINE,
+    // columns whose first values are mostly distinct switch to inline strings
+    AUTO
+  }
+
+  public enum Banding {
+    // every cell of a record carries the style of its zone
+    CELL_STYLES,
+    // the zones are drawn by conditional formatting rules, only the cells with a value are created
+    // when a record takes several rows, a hidden column right of the data marks the even ones
+    CONDITIONAL_FORMATTING,
+    // no zones, only the cells with a value are created
+    NONE
+  }
+
+  public enum Layout {
+    // the collection markers are merged over the rows taken by the collection
+    MERGED,
+    // the collection markers are followed by the number of rows taken by the collection, e.g. *3,
+    // no data cell is merged
+    FLAT,
+    // as FLAT, the scalars of a record are also repeated on each of its rows to allow filtering
+    FILL_DOWN
+  }
+
+  private List<FieldPath> fields = Collections.emptyList();
+  private Schema readerSchema;
+  private final List<RecordFilter.Condition> conditions = new ArrayList<>();
+  private double sampleFraction = 1.0;
+  private FieldPath sampleKey;
+  private StringStrategy stringStrategy = StringStrategy.SHARED;
+  private Banding banding = Banding.CELL_STYLES;
+  private ColumnWidthEstimator columnWidthEstimator = new ColumnWidthEstimator();
+  private boolean autoSizeColumns = true;
+  private Layout layout = Layout.MERGED;
+  private int recordIndexInterval;
+  private boolean metadataSheet = true;
+  private long maxRecords;
+  private int maxRows;
+
+  // the first records only, without banding: the cost no longer depends on the size of the file
+  public static ExportOptions preview(long maxRecords, int maxRows) {
+    return new ExportOptions()
+        .withMaxRecords(maxRecords)
+        .withMaxRows(maxRows)
+        .withBanding(Banding.NONE)
+        .withAutoSizeColumns(false);
+  }
+
+  // only these field paths are decoded and exported, e.g. "name" or "favorite.color"
+  public ExportOptions withFields(List<String> fieldPaths) {
+    List<FieldPath> parsed = new ArrayList<>();
+    for (String fieldPath : fieldPaths) {
+      parsed.add(FieldPath.parse(fieldPath));
+    }
+    this.fields = Collections.unmodifiableList(parsed);
+    return this;
+  }
+
+  public ExportOptions withReaderSchema(Schema readerSchema) {
+    this.readerSchema = readerSchema;
+    return this;
+  }
+
+  // only the records matching every filter are exported, e.g. "status=FAILED" or "a.b!=null"
+  public ExportOptions withFilter(String expression) {
+    this.conditions.add(RecordFilter.Condition.parse(expression));
+    return this;
+  }
+
+  // keeps about this fraction of the records, chosen by a hash of the record: every field is
+  // exported, the hash of a projected record would depend on the projection
+  public ExportOptions withSample(double fraction) {
+    return withSample(fraction, null);
+  }
+
+  // keeps about this fraction of the records, chosen by a hash of the key field
+  public ExportOptions withSample(double fraction, String keyPath) {
+    this.sampleFraction = fraction;
+    this.sampleKey = keyPath == null ? null : FieldPath.parse(keyPath);
+    return this;
+  }
+
+  public ExportOptions withStringStrategy(StringStrategy stringStrategy) {
+    this.stringStrategy = stringStrategy;
+    return this;
+  }
+
+  public ExportOptions withBanding(Banding banding) {
+    this.banding = banding;
+    return this;
+  }
+
+  public ExportOptions withColumnWidthEstimator(ColumnWidthEstimator columnWidthEstimator) {
+    this.columnWidthEstimator = columnWidthEstimator;
+    return this;
+  }
+
+  // by default every cell is measured with Sheet.autoSizeColumn, false estimates the widths from
+  // the values written instead, much faster on large sheets
+  public ExportOptions withAutoSizeColumns(boolean autoSizeColumns) {
+    this.autoSizeColumns = autoSizeColumns;
+    return this;
+  }
+
+  public ExportOptions withLayout(Layout layout) {
+    this.layout = layout;
+    return this;
+  }
+
+  // saves the first row of every interval-th record in the workbook, 0 for none
+  public ExportOptions withRecordIndex(int interval) {
+    this.recordIndexInterval = interval;
+    return this;
+  }
+
+  // the schema and origin of each sheet are saved in the very hidden _avroexcel sheet, so the
+  // import needs neither, without it the workbook holds only the data and no record index
+  public ExportOptions withMetadataSheet(boolean metadataSheet) {
+    this.metadataSheet = metadataSheet;
+    return this;
+  }
+
+  // the export stops after this many records, 0 for no limit
+  public ExportOptions withMaxRecords(long maxRecords) {
+    this.maxRecords = maxRecords;
+    return this;
+  }
+
+  // the export stops once this many data rows are written, the last record is written whole
+  public ExportOptions withMaxRows(int maxRows) {
+    this.maxRows = maxRows;
+    return this;
+  }
+
+  public List<FieldPath> getFields() {
+    return fields;
+  }
+
+  public Schema getReaderSchema() {
+    return readerSchema;
+  }
+
+  public StringStrategy getStringStrategy() {
+    return stringStrategy;
+  }
+
+  public Banding getBanding() {
+    return banding;
+  }
+
+  public ColumnWidthEstimator getColumnWidthEstimator() {
+    return columnWidthEstimator;
+  }
+
+  public boolean isAutoSizeColumns() {
+    return autoSizeColumns;
+  }
+
+  public Layout getLayout() {
+    return layout;
+  }
+
+  public int getRecordIndexInterval() {
+    return recordIndexInterval;
+  }
+
+  public boolean isMetadataSheet() {
+    return metadataSheet;
+  }
+
+  public long getMaxRecords() {
+    return maxRecords;
+  }
+
+  public int getMaxRows() {
+    return maxRows;
+  }
+
+  RecordFilter recordFilter(Schema schema) {
+    if (this.conditions.isEmpty() && this.sampleFraction >= 1) return RecordFilter.ALL;
+    if (this.sampleFraction < 1
+        && this.sampleKey == null
+        && (this.readerSchema != null || !this.fields.isEmpty()))
+      throw new IllegalArgumentException(
+          "Sampling projected records needs a key field, see withSample(fraction, keyPath)");
+    RecordFilter recordFilter = new RecordFilter(this.conditions, this.sampleFraction, sampleKey);
+    recordFilter.validate(schema);
+    return recordFilter;
+  }
+
+  // null when every field of the writer schema is exported
+  Schema readerSchema(Schema writerSchema) {
+    if (this.readerSchema != null && !this.fields.isEmpty())
+      throw new IllegalArgumentException("Use either a reader schema or a list of fields");
+    if (this.readerSchema != null) return this.readerSchema;
+    if (this.fields.isEmpty()) return null;
+    return SchemaProjection.project(writerSchema, this.fields);
+  }
+}
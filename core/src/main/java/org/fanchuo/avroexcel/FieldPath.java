@@ -0,0 +1,39 @@
+package org.fanchuo.avroexcel;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.apache.avro.generic.GenericRecord;
+
+public class FieldPath {
+  private final List<String> names;
+
+  public FieldPath(List<String> names) {
+    if (names.isEmpty()) throw new IllegalArgumentException("Empty field path");
+    this.names = Collections.unmodifiableList(names);
+  }
+
+  public static FieldPath parse(String path) {
+    return new FieldPath(Arrays.asList(path.split("\\.", -1)));
+  }
+
+  public List<String> getNames() {
+    return names;
+  }
+
+  public Object get(GenericRecord record) {
+    Object value = record;
+    for (String name : this.names) {
+      if (!(value instanceof GenericRecord)) return null;
+      GenericRecord current = (GenericRecord) value;
+      if (!current.hasField(name)) return null;
+      value = current.get(name);
+    }
+    return value;
+  }
+
+  @Override
+  public String toString() {
+    return String.join(".", names);
+  }
+}
@@ -0,0 +1,31 @@
+package org.fanchuo.avroexcel;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+public class FileConversionResult {
+  public final File inputFile;
+  public final long recordCount;
+  public final List<String> skippedColumns;
+  public final Exception error;
+
+  FileConversionResult(File inputFile, ImportResult result, Exception error) {
+    this.inputFile = inputFile;
+    this.recordCount = result == null ? 0 : result.recordCount;
+    this.skippedColumns = result == null ? Collections.emptyList() : result.skippedColumns;
+    this.error = error;
+  }
+
+  public boolean isSuccess() {
+    return error == null;
+  }
+
+  @Override
+  public String toString() {
+    if (error != null) return String.format("%s: FAILED %s", inputFile, error);
+    if (skippedColumns.isEmpty()) return String.format("%s: %d records", inputFile, recordCount);
+    return String.format(
+        "%s: %d records, skipped columns %s", inputFile, recordCount, skippedColumns);
+  }
+}
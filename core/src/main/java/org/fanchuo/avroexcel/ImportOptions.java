@@ -0,0 +1,26 @@
+package org.fanchuo.avroexcel;
+
+public class ImportOptions {
+  private boolean skipUnmappedColumns;
+  private boolean evaluateFormulas;
+
+  // columns whose header has no field in the schema are ignored instead of failing the record
+  public ImportOptions withSkipUnmappedColumns(boolean skipUnmappedColumns) {
+    this.skipUnmappedColumns = skipUnmappedColumns;
+    return this;
+  }
+
+  public boolean isSkipUnmappedColumns() {
+    return skipUnmappedColumns;
+  }
+
+  // formulas are re-evaluated on load instead of using the results cached in the workbook
+  public ImportOptions withEvaluateFormulas(boolean evaluateFormulas) {
+    this.evaluateFormulas = evaluateFormulas;
+    return this;
+  }
+
+  public boolean isEvaluateFormulas() {
+    return evaluateFormulas;
+  }
+}
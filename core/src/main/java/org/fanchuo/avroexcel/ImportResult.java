@@ -0,0 +1,28 @@
+package org.fanchuo.avroexcel;
+
+import java.util.Collections;
+import java.util.List;
+
+public class ImportResult {
+  public final long recordCount;
+  // header paths left out because the schema has no field for them, see ImportOptions
+  public final List<String> skippedColumns;
+  // the parts written by convertRolling, null for the other conversions
+  public final Manifest manifest;
+
+  ImportResult(long recordCount, List<String> skippedColumns) {
+    this(recordCount, skippedColumns, null);
+  }
+
+  ImportResult(long recordCount, List<String> skippedColumns, Manifest manifest) {
+    this.recordCount = recordCount;
+    this.skippedColumns = Collections.unmodifiableList(skippedColumns);
+    this.manifest = manifest;
+  }
+
+  @Override
+  public String toString() {
+    if (skippedColumns.isEmpty()) return String.format("%d records", recordCount);
+    return String.format("%d records, skipped columns %s", recordCount, skippedColumns);
+  }
+}
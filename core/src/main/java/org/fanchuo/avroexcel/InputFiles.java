@@ -0,0 +1,29 @@
+package org.fanchuo.avroexcel;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class InputFiles {
+  private InputFiles() {}
+
+  // the wildcards are only expanded in the file name, e.g. data/2025-01-01/*.avro
+  public static List<File> glob(String pattern) throws IOException {
+    Path path = Paths.get(pattern);
+    Path dir = path.getParent() == null ? Paths.get(".") : path.getParent();
+    PathMatcher matcher =
+        FileSystems.getDefault().getPathMatcher("glob:" + path.getFileName().toString());
+    List<File> files = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+      for (Path candidate : stream) {
+        if (Files.isRegularFile(candidate) && matcher.matches(candidate.getFileName()))
+          files.add(candidate.toFile());
+      }
+    }
+    Collections.sort(files);
+    return files;
+  }
+}
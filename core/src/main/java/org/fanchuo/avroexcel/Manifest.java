@@ -0,0 +1,86 @@
+package org.fanchuo.avroexcel;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class Manifest {
+  public static final String FILE_NAME = "manifest.tsv";
+
+  // what the start and end offsets of the entries count, the header names their columns after it
+  public enum Unit {
+    // bytes of the Avro file split by AvroToExcelConverter.convertSplit
+    BYTE("startByte\tendByte"),
+    // rows of the sheet read by ExcelToAvroConverter.convertRolling
+    ROW("startRow\tendRow");
+
+    private final String columns;
+
+    Unit(String columns) {
+      this.columns = columns;
+    }
+  }
+
+  public static class Entry {
+    public final String file;
+    public final long firstRecord;
+    public final long recordCount;
+    // in the unit of the manifest
+    public final long startOffset;
+    public final long endOffset;
+
+    Entry(String file, long firstRecord, long recordCount, long startOffset, long endOffset) {
+      this.file = file;
+      this.firstRecord = firstRecord;
+      this.recordCount = recordCount;
+      this.startOffset = startOffset;
+      this.endOffset = endOffset;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          "%s\t%d\t%d\t%d\t%d", file, firstRecord, recordCount, startOffset, endOffset);
+    }
+  }
+
+  private final Unit unit;
+  private final List<Entry> entries = new ArrayList<>();
+  private long recordCount;
+
+  Manifest(Unit unit) {
+    this.unit = unit;
+  }
+
+  void add(String file, long recordCount, long startOffset, long endOffset) {
+    this.entries.add(new Entry(file, this.recordCount, recordCount, startOffset, endOffset));
+    this.recordCount += recordCount;
+  }
+
+  public List<Entry> getEntries() {
+    return Collections.unmodifiableList(entries);
+  }
+
+  public long getRecordCount() {
+    return recordCount;
+  }
+
+  public Unit getUnit() {
+    return unit;
+  }
+
+  void write(File manifestFile) throws IOException {
+    try (Writer w =
+        new OutputStreamWriter(new FileOutputStream(manifestFile), StandardCharsets.UTF_8)) {
+      w.write("file\tfirstRecord\trecordCount\t");
+      w.write(unit.columns);
+      w.write('\n');
+      for (Entry entry : entries) {
+        w.write(entry.toString());
+        w.write('\n');
+      }
+    }
+  }
+}
@@ -0,0 +1,73 @@
+package org.fanchuo.avroexcel;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import org.apache.avro.file.SeekableInput;
+
+class MappedSeekableInput implements SeekableInput {
+  // a single mapping is limited to Integer.MAX_VALUE bytes
+  private static final long SEGMENT_SIZE = 1L << 30;
+
+  private final MappedByteBuffer[] segments;
+  private final long length;
+  private long position;
+
+  MappedSeekableInput(File file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      this.length = channel.size();
+      this.segments = new MappedByteBuffer[(int) ((length + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+      for (int i = 0; i < segments.length; i++) {
+        long start = i * SEGMENT_SIZE;
+        long size = Math.min(SEGMENT_SIZE, length - start);
+        segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+      }
+    }
+  }
+
+  private MappedSeekableInput(MappedByteBuffer[] segments, long length) {
+    this.segments = segments;
+    this.length = length;
+  }
+
+  // shares the mapping, with its own position
+  MappedSeekableInput duplicate() {
+    return new MappedSeekableInput(this.segments, this.length);
+  }
+
+  @Override
+  public void seek(long p) throws IOException {
+    if (p < 0 || p > length)
+      throw new IOException(String.format("Position %d outside of [0, %d]", p, length));
+    this.position = p;
+  }
+
+  @Override
+  public long tell() {
+    return this.position;
+  }
+
+  @Override
+  public long length() {
+    return this.length;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) {
+    if (this.position >= this.length) return -1;
+    // duplicate: the mapped buffers are shared between threads, their positions are not
+    ByteBuffer segment = this.segments[(int) (this.position / SEGMENT_SIZE)].duplicate();
+    int offset = (int) (this.position % SEGMENT_SIZE);
+    int count = Math.min(len, segment.limit() - offset);
+    segment.position(offset);
+    segment.get(b, off, count);
+    this.position += count;
+    return count;
+  }
+
+  @Override
+  public void close() {}
+}
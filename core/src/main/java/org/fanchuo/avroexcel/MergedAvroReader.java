@@ -0,0 +1,107 @@
+package org.fanchuo.avroexcel;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaCompatibility;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.fanchuo.avroexcel.parallel.TaskOutcome;
+import org.fanchuo.avroexcel.parallel.TaskRunner;
+
+class MergedAvroReader implements Closeable {
+  private static final int QUEUE_CAPACITY = 1024;
+  private static final Object END = new Object();
+
+  private final List<File> avroFiles;
+  private final Schema schema;
+  private final ExecutorService executor;
+
+  private class Source {
+    final File avroFile;
+    final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    Future<Void> future;
+
+    Source(File avroFile) {
+      this.avroFile = avroFile;
+    }
+
+    Void read() throws IOException, InterruptedException {
+      try (DataFileReader<GenericRecord> reader =
+          new DataFileReader<>(
+              avroFile, new GenericDatumReader<>(null, schema, AvroReader.makeGenericData()))) {
+        checkCompatibility(avroFile, reader.getSchema());
+        for (GenericRecord record : reader) {
+          queue.put(record);
+        }
+      } finally {
+        queue.put(END);
+      }
+      return null;
+    }
+  }
+
+  MergedAvroReader(List<File> avroFiles, Schema readerSchema, int threads) throws IOException {
+    if (avroFiles.isEmpty()) throw new IllegalArgumentException("No Avro file to read");
+    this.avroFiles = new ArrayList<>(avroFiles);
+    this.schema = readerSchema != null ? readerSchema : readSchema(avroFiles.get(0));
+    this.executor = Executors.newFixedThreadPool(TaskRunner.threads(threads, avroFiles.size()));
+  }
+
+  private static Schema readSchema(File avroFile) throws IOException {
+    try (DataFileReader<GenericRecord> reader =
+        new DataFileReader<>(avroFile, new GenericDatumReader<>())) {
+      return reader.getSchema();
+    }
+  }
+
+  private void checkCompatibility(File avroFile, Schema writerSchema) throws IOException {
+    SchemaCompatibility.SchemaPairCompatibility compatibility =
+        SchemaCompatibility.checkReaderWriterCompatibility(this.schema, writerSchema);
+    if (compatibility.getType() != SchemaCompatibility.SchemaCompatibilityType.COMPATIBLE)
+      throw new IOException(
+          String.format(
+              "Schema of %s cannot be read with the reader schema: %s",
+              avroFile, compatibility.getDescription()));
+  }
+
+  public Schema getSchema() {
+    return schema;
+  }
+
+  // files are decoded ahead on the pool, records are handed over in file order
+  long process(Consumer<GenericRecord> consumer) throws IOException {
+    List<Source> sources = new ArrayList<>();
+    for (File avroFile : this.avroFiles) {
+      Source source = new Source(avroFile);
+      source.future = this.executor.submit(source::read);
+      sources.add(source);
+    }
+    long recordCount = 0;
+    for (Source source : sources) {
+      try {
+        for (Object item = source.queue.take(); item != END; item = source.queue.take()) {
+          consumer.accept((GenericRecord) item);
+          recordCount++;
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while reading " + source.avroFile);
+      }
+      TaskOutcome.await(source.future).getOrThrow();
+    }
+    return recordCount;
+  }
+
+  @Override
+  public void close() {
+    this.executor.shutdownNow();
+  }
+}
@@ -0,0 +1,193 @@
+package org.fanchuo.avroexcel;
+
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.poi.ss.util.WorkbookUtil;
+import org.fanchuo.avroexcel.parallel.TaskRunner;
+import org.fanchuo.avroexcel.recordgeometry.RecordGeometry;
+import org.fanchuo.avroexcel.recordgeometry.RecordGeometryAvroReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+class PartitionedExport implements Consumer<GenericRecord> {
+  private static final Logger LOGGER = LoggerFactory.getLogger(PartitionedExport.class);
+  static final String OVERFLOW_SHEET = "_other";
+  static final String MISSING_SHEET = "_missing";
+  // the key of the records without a value at the partition path, apart from the string "null"
+  private static final Object MISSING = new Object();
+  private static final String EMPTY_SHEET = "tab";
+  // records routed but not yet written, the reader waits beyond that
+  private static final int QUEUE_CAPACITY = 1024;
+
+  private final WorkbookWriter workbookWriter;
+  private final Schema schema;
+  private final int col;
+  private final int row;
+  private final FieldPath partitionPath;
+  private final int maxSheets;
+  private final ExecutorService executor;
+  private final Semaphore capacity = new Semaphore(QUEUE_CAPACITY);
+  // the first failure of a writer, the reader stops on its next record
+  private final AtomicReference<Throwable> failure = new AtomicReference<>();
+  private final Map<Object, Partition> partitions = new HashMap<>();
+  private final List<Partition> ordered = new ArrayList<>();
+  private final Set<String> usedSheetNames = new HashSet<>();
+  private Partition overflow;
+
+  // the records of a sheet are written in order by at most one worker at a time
+  private class Partition {
+    final SheetExporter exporter;
+    final Queue<GenericRecord> queue = new ConcurrentLinkedQueue<>();
+    final AtomicBoolean scheduled = new AtomicBoolean();
+
+    Partition(SheetExporter exporter) {
+      this.exporter = exporter;
+    }
+
+    void add(GenericRecord record) {
+      queue.add(record);
+      if (scheduled.compareAndSet(false, true)) executor.execute(this::drain);
+    }
+
+    void drain() {
+      try {
+        GenericRecord record;
+        while (failure.get() == null && (record = queue.poll()) != null) {
+          try {
+            write(record);
+          } finally {
+            capacity.release();
+          }
+        }
+      } catch (RuntimeException | Error e) {
+        failure.compareAndSet(null, e);
+      } finally {
+        scheduled.set(false);
+      }
+      // a record added after the last poll found the worker still scheduled
+      if (failure.get() == null && !queue.isEmpty() && scheduled.compareAndSet(false, true))
+        executor.execute(this::drain);
+    }
+
+    private void write(GenericRecord record) {
+      RecordGeometry recordGeometry = RecordGeometryAvroReader.visitRecord(record);
+      synchronized (workbookWriter.workbookLock) {
+        exporter.accept(record, recordGeometry);
+      }
+    }
+  }
+
+  PartitionedExport(
+      WorkbookWriter workbookWriter,
+      Schema schema,
+      int col,
+      int row,
+      FieldPath partitionPath,
+      int maxSheets) {
+    if (maxSheets < 1) throw new IllegalArgumentException("maxSheets must be at least 1");
+    this.workbookWriter = workbookWriter;
+    this.schema = schema;
+    this.col = col;
+    this.row = row;
+    this.partitionPath = partitionPath;
+    this.maxSheets = maxSheets;
+    // the cells are written under the workbook lock, the workers overlap on the record geometry
+    this.executor = Executors.newFixedThreadPool(TaskRunner.threads(0, maxSheets + 1));
+  }
+
+  @Override
+  public void accept(GenericRecord record) {
+    checkFailure();
+    Object value = partitionPath.get(record);
+    Object key = value == null ? MISSING : value.toString();
+    Partition partition = partitions.get(key);
+    if (partition == null) {
+      if (partitions.size() < maxSheets) {
+        partition = startPartition(key == MISSING ? MISSING_SHEET : (String) key);
+        partitions.put(key, partition);
+      } else {
+        if (overflow == null) overflow = startPartition(OVERFLOW_SHEET);
+        partition = overflow;
+      }
+    }
+    offer(partition, record);
+  }
+
+  private void checkFailure() {
+    Throwable cause = failure.get();
+    if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+    if (cause instanceof Error) throw (Error) cause;
+  }
+
+  private Partition startPartition(String key) {
+    SheetExporter exporter;
+    synchronized (workbookWriter.workbookLock) {
+      SheetWriter sheetWriter = workbookWriter.createSheet(sheetName(key));
+      LOGGER.debug("partition {} written to sheet {}", key, sheetWriter.getSheetName());
+      exporter = new SheetExporter(sheetWriter, schema, col, row);
+      exporter.writeHeaders();
+    }
+    Partition partition = new Partition(exporter);
+    ordered.add(partition);
+    return partition;
+  }
+
+  private String sheetName(String key) {
+    String base = WorkbookUtil.createSafeSheetName(key);
+    String name = base;
+    int suffix = 2;
+    // sheet names are case insensitive in Excel
+    while (!usedSheetNames.add(name.toLowerCase(Locale.ROOT))) {
+      String tail = " (" + suffix++ + ")";
+      name = base.substring(0, Math.min(base.length(), 31 - tail.length())) + tail;
+    }
+    return name;
+  }
+
+  private void offer(Partition partition, GenericRecord record) {
+    acquire(1);
+    partition.add(record);
+  }
+
+  private void acquire(int permits) {
+    try {
+      while (!capacity.tryAcquire(permits, 100, TimeUnit.MILLISECONDS)) {
+        // the permits of a failed writer never come back
+        checkFailure();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new UncheckedIOException(new InterruptedIOException("Interrupted while routing"));
+    }
+  }
+
+  void finish() {
+    try {
+      if (ordered.isEmpty()) startPartition(EMPTY_SHEET);
+      // every permit is back once every routed record is written
+      acquire(QUEUE_CAPACITY);
+      checkFailure();
+      // the workers are idle, the sheets are sized on this thread
+      for (Partition partition : ordered) {
+        partition.exporter.finish();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  void abort() {
+    executor.shutdownNow();
+  }
+
+  int getSheetCount() {
+    return ordered.size();
+  }
+}
@@ -0,0 +1,57 @@
+package org.fanchuo.avroexcel;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+
+class RangeExport implements Callable<Long> {
+  final long startOffset;
+  final long endOffset;
+  final File excelFile;
+  private final MappedSeekableInput input;
+  private final String sheetName;
+  private final int col;
+  private final int row;
+
+  RangeExport(
+      MappedSeekableInput input,
+      long startOffset,
+      long endOffset,
+      File excelFile,
+      String sheetName,
+      int col,
+      int row) {
+    this.input = input;
+    this.startOffset = startOffset;
+    this.endOffset = endOffset;
+    this.excelFile = excelFile;
+    this.sheetName = sheetName;
+    this.col = col;
+    this.row = row;
+  }
+
+  // exports the blocks whose sync marker is in [startOffset, endOffset), no file if there is none
+  @Override
+  public Long call() throws IOException {
+    try (DataFileReader<GenericRecord> reader =
+        new DataFileReader<>(
+            this.input, new GenericDatumReader<>(null, null, AvroReader.makeGenericData()))) {
+      reader.sync(this.startOffset);
+      if (!reader.hasNext() || reader.pastSync(this.endOffset)) return 0L;
+      try (WorkbookWriter workbookWriter = new WorkbookWriter(this.excelFile)) {
+        SheetExporter sheetExporter =
+            new SheetExporter(
+                workbookWriter.createSheet(this.sheetName), reader.getSchema(), col, row);
+        sheetExporter.writeHeaders();
+        do {
+          sheetExporter.accept(reader.next());
+        } while (reader.hasNext() && !reader.pastSync(this.endOffset));
+        sheetExporter.finish();
+        return sheetExporter.getRecordCount();
+      }
+    }
+  }
+}
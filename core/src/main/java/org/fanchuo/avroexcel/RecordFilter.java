@@ -0,0 +1,113 @@
+package org.fanchuo.avroexcel;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+
+// conditions are compared with the string form of the value, "null" matches a missing value
+class RecordFilter implements Predicate<GenericRecord> {
+  static final RecordFilter ALL = new RecordFilter(Collections.emptyList(), 1.0, null);
+
+  static class Condition {
+    final FieldPath fieldPath;
+    final String value;
+    final boolean negated;
+
+    Condition(FieldPath fieldPath, String value, boolean negated) {
+      this.fieldPath = fieldPath;
+      this.value = value;
+      this.negated = negated;
+    }
+
+    // path=value or path!=value, field names hold no '=' so the first one is the operator
+    static Condition parse(String expression) {
+      int idx = expression.indexOf('=');
+      boolean negated = idx > 0 && expression.charAt(idx - 1) == '!';
+      int pathEnd = negated ? idx - 1 : idx;
+      if (pathEnd <= 0)
+        throw new IllegalArgumentException(
+            String.format("Invalid filter '%s', expected path=value or path!=value", expression));
+      FieldPath fieldPath = FieldPath.parse(expression.substring(0, pathEnd));
+      return new Condition(fieldPath, expression.substring(idx + 1), negated);
+    }
+
+    boolean test(GenericRecord record) {
+      return this.value.equals(String.valueOf(this.fieldPath.get(record))) != this.negated;
+    }
+  }
+
+  private final List<Condition> conditions;
+  private final double sampleFraction;
+  private final FieldPath sampleKey;
+
+  RecordFilter(List<Condition> conditions, double sampleFraction, FieldPath sampleKey) {
+    if (sampleFraction < 0 || sampleFraction > 1)
+      throw new IllegalArgumentException("The sample fraction must be between 0 and 1");
+    this.conditions = new ArrayList<>(conditions);
+    this.sampleFraction = sampleFraction;
+    this.sampleKey = sampleKey;
+  }
+
+  // the filter runs on decoded records, so its fields have to be part of the projection
+  void validate(Schema schema) {
+    List<FieldPath> fieldPaths = new ArrayList<>();
+    for (Condition condition : this.conditions) {
+      fieldPaths.add(condition.fieldPath);
+    }
+    if (this.sampleKey != null) fieldPaths.add(this.sampleKey);
+    for (FieldPath fieldPath : fieldPaths) {
+      if (!exists(schema, fieldPath.getNames()))
+        throw new IllegalArgumentException(
+            String.format("Filter field %s is not among the exported fields", fieldPath));
+    }
+  }
+
+  private static boolean exists(Schema schema, List<String> names) {
+    if (names.isEmpty()) return true;
+    List<Schema> candidates =
+        schema.getType() == Schema.Type.UNION
+            ? schema.getTypes()
+            : Collections.singletonList(schema);
+    for (Schema candidate : candidates) {
+      if (candidate.getType() != Schema.Type.RECORD) continue;
+      Schema.Field field = candidate.getField(names.get(0));
+      if (field != null && exists(field.schema(), names.subList(1, names.size()))) return true;
+    }
+    return false;
+  }
+
+  @Override
+  public boolean test(GenericRecord record) {
+    for (Condition condition : this.conditions) {
+      if (!condition.test(record)) return false;
+    }
+    return this.sampleFraction >= 1 || sampled(record);
+  }
+
+  // same record, or same key, same decision, whatever the file or the run. Without a key the
+  // records are not projected, see ExportOptions.recordFilter
+  private boolean sampled(GenericRecord record) {
+    int hash;
+    if (this.sampleKey == null) {
+      hash = GenericData.get().hashCode(record, record.getSchema());
+    } else {
+      byte[] key = String.valueOf(this.sampleKey.get(record)).getBytes(StandardCharsets.UTF_8);
+      hash = 0;
+      for (byte b : key) {
+        hash = 31 * hash + b;
+      }
+    }
+    // murmur3 finalizer, spreads the bits before the comparison
+    hash ^= hash >>> 16;
+    hash *= 0x85ebca6b;
+    hash ^= hash >>> 13;
+    hash *= 0xc2b2ae35;
+    hash ^= hash >>> 16;
+    return (hash & 0xffffffffL) < this.sampleFraction * 0x100000000L;
+  }
+}
@@ -0,0 +1,93 @@
+package org.fanchuo.avroexcel;
+
+import java.io.*;
+import org.apache.avro.Schema;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.DatumWriter;
+
+// part sizes are only seen once a block is flushed, so a part can exceed maxBytes by about a block
+class RollingAvroWriter implements Closeable {
+  private final File outputDir;
+  private final Schema schema;
+  private final long maxBytes;
+  private final long maxRecords;
+  private final DatumWriter<GenericRecord> datumWriter;
+  private final Manifest manifest = new Manifest(Manifest.Unit.ROW);
+  private DataFileWriter<GenericRecord> dataFileWriter;
+  private CountingOutputStream countingStream;
+  private String partName;
+  private int partIndex;
+  private long partRecords;
+  private long partStart;
+  private long partEnd;
+
+  private static class CountingOutputStream extends FilterOutputStream {
+    long count;
+
+    CountingOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      count += len;
+    }
+  }
+
+  RollingAvroWriter(File outputDir, Schema schema, long maxBytes, long maxRecords) {
+    this.outputDir = outputDir;
+    this.schema = schema;
+    this.maxBytes = maxBytes;
+    this.maxRecords = maxRecords;
+    this.datumWriter = new GenericDatumWriter<>(schema, AvroReader.makeGenericData());
+  }
+
+  // sourceStart and sourceEnd are the sheet rows of the record, they are reported in the manifest
+  void append(GenericRecord record, long sourceStart, long sourceEnd) throws IOException {
+    if (this.dataFileWriter == null) open(sourceStart);
+    this.dataFileWriter.append(record);
+    this.partRecords++;
+    this.partEnd = sourceEnd;
+    if ((this.maxRecords > 0 && this.partRecords >= this.maxRecords)
+        || (this.maxBytes > 0 && this.countingStream.count >= this.maxBytes)) roll();
+  }
+
+  private void open(long sourceStart) throws IOException {
+    this.partName = String.format("part-%05d.avro", this.partIndex++);
+    this.countingStream =
+        new CountingOutputStream(new FileOutputStream(new File(this.outputDir, this.partName)));
+    this.dataFileWriter = new DataFileWriter<>(this.datumWriter);
+    this.dataFileWriter.create(this.schema, this.countingStream);
+    this.partRecords = 0;
+    this.partStart = sourceStart;
+    this.partEnd = sourceStart;
+  }
+
+  private void roll() throws IOException {
+    this.dataFileWriter.close();
+    this.dataFileWriter = null;
+    this.manifest.add(this.partName, this.partRecords, this.partStart, this.partEnd);
+  }
+
+  // an input without records still gets one empty part, so the schema can be found downstream
+  Manifest finish(long sourceEnd) throws IOException {
+    if (this.dataFileWriter == null && this.partIndex == 0) open(sourceEnd);
+    if (this.dataFileWriter != null) roll();
+    this.manifest.write(new File(this.outputDir, Manifest.FILE_NAME));
+    return this.manifest;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (this.dataFileWriter != null) this.dataFileWriter.close();
+  }
+}
@@ -0,0 +1,92 @@
+package org.fanchuo.avroexcel;
+
+import java.util.*;
+import org.apache.avro.Schema;
+
+// builds a reader schema keeping only the given field paths, records keep their full names so
+// that schema resolution matches them with the writer's records and skips the other fields
+class SchemaProjection {
+  private final Map<String, Schema> projectedRecords = new HashMap<>();
+
+  private SchemaProjection() {}
+
+  static Schema project(Schema writerSchema, List<FieldPath> fieldPaths) {
+    List<List<String>> paths = new ArrayList<>();
+    for (FieldPath fieldPath : fieldPaths) {
+      paths.add(fieldPath.getNames());
+    }
+    return new SchemaProjection().project(writerSchema, paths, "", true);
+  }
+
+  private Schema project(Schema schema, List<List<String>> paths, String prefix, boolean strict) {
+    switch (schema.getType()) {
+      case RECORD:
+        return projectRecord(schema, paths, prefix, strict);
+      case UNION:
+        int nested = 0;
+        for (Schema type : schema.getTypes()) {
+          if (isNested(type)) nested++;
+        }
+        if (nested == 0) break;
+        // with several nested branches, a field only has to exist in one of them
+        List<Schema> types = new ArrayList<>();
+        for (Schema type : schema.getTypes()) {
+          types.add(isNested(type) ? project(type, paths, prefix, nested == 1) : type);
+        }
+        return Schema.createUnion(types);
+      case ARRAY:
+        return Schema.createArray(project(schema.getElementType(), paths, prefix, strict));
+      case MAP:
+        return Schema.createMap(project(schema.getValueType(), paths, prefix, strict));
+      default:
+        break;
+    }
+    throw new IllegalArgumentException(
+        String.format(
+            "No field %s%s in %s", prefix, paths.get(0).get(0), schema.getType().getName()));
+  }
+
+  private static boolean isNested(Schema schema) {
+    Schema.Type type = schema.getType();
+    return type == Schema.Type.RECORD || type == Schema.Type.ARRAY || type == Schema.Type.MAP;
+  }
+
+  private Schema projectRecord(
+      Schema schema, List<List<String>> paths, String prefix, boolean strict) {
+    Map<String, List<List<String>>> subPaths = new LinkedHashMap<>();
+    for (List<String> path : paths) {
+      String name = path.get(0);
+      if (schema.getField(name) == null) {
+        if (!strict) continue;
+        throw new IllegalArgumentException(
+            String.format("No field %s%s in record %s", prefix, name, schema.getFullName()));
+      }
+      List<List<String>> fieldPaths = subPaths.computeIfAbsent(name, k -> new ArrayList<>());
+      // an empty path selects the whole field, it wins over deeper paths
+      if (path.size() == 1) fieldPaths.clear();
+      if (path.size() == 1 || fieldPaths.isEmpty() || !fieldPaths.get(0).isEmpty())
+        fieldPaths.add(path.subList(1, path.size()));
+    }
+    List<Schema.Field> fields = new ArrayList<>();
+    for (Schema.Field field : schema.getFields()) {
+      List<List<String>> fieldPaths = subPaths.get(field.name());
+      if (fieldPaths == null) continue;
+      Schema fieldSchema =
+          fieldPaths.get(0).isEmpty()
+              ? field.schema()
+              : project(field.schema(), fieldPaths, prefix + field.name() + ".", true);
+      fields.add(new Schema.Field(field.name(), fieldSchema, field.doc(), (Object) null));
+    }
+    Schema projected =
+        Schema.createRecord(
+            schema.getName(), schema.getDoc(), schema.getNamespace(), schema.isError(), fields);
+    Schema other = this.projectedRecords.putIfAbsent(schema.getFullName(), projected);
+    if (other == null) return projected;
+    if (!other.equals(projected))
+      throw new IllegalArgumentException(
+          String.format(
+              "Record %s is used in several places with different projections",
+              schema.getFullName()));
+    return other;
+  }
+}
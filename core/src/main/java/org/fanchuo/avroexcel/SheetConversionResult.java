@@ -0,0 +1,38 @@
+package org.fanchuo.avroexcel;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+public class SheetConversionResult {
+  public final String sheetName;
+  public final File outputFile;
+  public final long recordCount;
+  public final List<String> skippedColumns;
+  public final Exception error;
+
+  SheetConversionResult(String sheetName, File outputFile, ImportResult result, Exception error) {
+    this.sheetName = sheetName;
+    this.outputFile = outputFile;
+    this.recordCount = result == null ? 0 : result.recordCount;
+    this.skippedColumns = result == null ? Collections.emptyList() : result.skippedColumns;
+    this.error = error;
+  }
+
+  public boolean isSuccess() {
+    return error == null;
+  }
+
+  @Override
+  public String toString() {
+    if (error != null) return String.format("%s -> %s: FAILED %s", sheetName, outputFile, error);
+    if (skippedColumns.isEmpty())
+      return String.format("%s -> %s: %d records", sheetName, outputFile, recordCount);
+    return String.format(
+        "%s -> %s: %d records, skipped columns %s",
+        sheetName,
+        outputFile,
+        recordCount,
+        skippedColumns);
+  }
+}
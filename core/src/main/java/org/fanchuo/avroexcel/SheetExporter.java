@@ -0,0 +1,64 @@
+package org.fanchuo.avroexcel;
+
+import java.util.function.Consumer;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericRecord;
+import org.fanchuo.avroexcel.headerinfo.HeaderInfo;
+import org.fanchuo.avroexcel.headerinfo.HeaderInfoAvroSchemaReader;
+import org.fanchuo.avroexcel.recordgeometry.RecordGeometry;
+import org.fanchuo.avroexcel.recordgeometry.RecordGeometryAvroReader;
+
+class SheetExporter implements Consumer<GenericRecord> {
+  private final SheetWriter sheetWriter;
+  private final HeaderInfo root;
+  private final int col;
+  private final int row;
+  private WorkbookWriter.Zone zone = WorkbookWriter.Zone.ODD;
+  private int idx;
+  private long recordCount;
+
+  SheetExporter(SheetWriter sheetWriter, Schema schema, int col, int row) {
+    this.sheetWriter = sheetWriter;
+    this.root = HeaderInfoAvroSchemaReader.visitSchema(null, schema);
+    this.col = col;
+    this.row = row;
+    this.idx = row + root.rowSpan;
+    sheetWriter.setMetadata(schema, col, row);
+  }
+
+  void writeHeaders() {
+    sheetWriter.writeHeaders(col, row, root, row + root.rowSpan);
+    sheetWriter.color(col, row, root.colSpan, root.rowSpan, WorkbookWriter.Zone.HEADER);
+  }
+
+  @Override
+  public void accept(GenericRecord record) {
+    accept(record, RecordGeometryAvroReader.visitRecord(record));
+  }
+
+  // the geometry only depends on the record, it can be computed away from the workbook
+  void accept(GenericRecord record, RecordGeometry recordGeometry) {
+    sheetWriter.recordStart(recordCount, idx);
+    sheetWriter.color(col, idx, root.colSpan, recordGeometry.rowSpan, zone);
+    sheetWriter.writeRecord(
+        record, root, recordGeometry, col, idx, idx + recordGeometry.rowSpan, zone);
+    idx += recordGeometry.rowSpan;
+    recordCount++;
+    if (zone == WorkbookWriter.Zone.EVEN) zone = WorkbookWriter.Zone.ODD;
+    else zone = WorkbookWriter.Zone.EVEN;
+  }
+
+  void finish() {
+    sheetWriter.finalize(col, root.colSpan);
+  }
+
+  // limits of 0 are unbounded
+  boolean isFull(long maxRecords, int maxRows) {
+    if (maxRecords > 0 && this.recordCount >= maxRecords) return true;
+    return maxRows > 0 && this.idx - this.row - this.root.rowSpan >= maxRows;
+  }
+
+  long getRecordCount() {
+    return recordCount;
+  }
+}
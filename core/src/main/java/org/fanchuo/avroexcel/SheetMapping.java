@@ -0,0 +1,40 @@
+package org.fanchuo.avroexcel;
+
+import java.io.File;
+import java.util.regex.Pattern;
+import org.apache.avro.Schema;
+
+public class SheetMapping {
+  public static final String SHEET_PLACEHOLDER = "{sheet}";
+
+  public final Pattern sheetPattern;
+  public final Schema schema;
+  public final String output;
+
+  public SheetMapping(Pattern sheetPattern, Schema schema, String output) {
+    this.sheetPattern = sheetPattern;
+    this.schema = schema;
+    this.output = output;
+  }
+
+  public static SheetMapping forSheet(String sheetName, Schema schema, File output) {
+    return new SheetMapping(Pattern.compile(Pattern.quote(sheetName)), schema, output.getPath());
+  }
+
+  public static SheetMapping forPattern(String regex, Schema schema, String output) {
+    return new SheetMapping(Pattern.compile(regex), schema, output);
+  }
+
+  public boolean matches(String sheetName) {
+    return this.sheetPattern.matcher(sheetName).matches();
+  }
+
+  public File outputFor(String sheetName) {
+    return new File(this.output.replace(SHEET_PLACEHOLDER, sheetName));
+  }
+
+  @Override
+  public String toString() {
+    return "SheetMapping{" + "sheetPattern=" + sheetPattern + ", output='" + output + '\'' + '}';
+  }
+}
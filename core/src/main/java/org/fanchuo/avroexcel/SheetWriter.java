@@ -0,0 +1,482 @@
+package org.fanchuo.avroexcel;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.xssf.usermodel.XSSFCell;
+import org.apache.poi.xssf.usermodel.XSSFRichTextString;
+import org.fanchuo.avroexcel.excelutil.ExcelDateCodec;
+import org.fanchuo.avroexcel.excelutil.RecordIndex;
+import org.fanchuo.avroexcel.excelutil.SheetMetadata;
+import org.fanchuo.avroexcel.headerinfo.CollectionDescriptor;
+import org.fanchuo.avroexcel.headerinfo.HeaderInfo;
+import org.fanchuo.avroexcel.recordgeometry.RecordGeometry;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTCell;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.STCellType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class SheetWriter {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SheetWriter.class);
+  // new workbooks use the 1900 date system
+  private static final boolean DATE_1904 = false;
+  private static final int STRING_SAMPLE_SIZE = 1000;
+
+  private final WorkbookWriter workbookWriter;
+  private final Sheet sheet;
+  private ExportOptions.StringStrategy stringStrategy = ExportOptions.StringStrategy.SHARED;
+  private ColumnStrings[] columnStrings = new ColumnStrings[0];
+  private ExportOptions.Banding banding = ExportOptions.Banding.CELL_STYLES;
+  private ExportOptions.Layout layout = ExportOptions.Layout.MERGED;
+  private int recordIndexInterval;
+  private boolean metadataSheet = true;
+  SheetMetadata metadata;
+  private ColumnWidthEstimator columnWidthEstimator = new ColumnWidthEstimator();
+  private boolean autoSizeColumns = true;
+  // longest formatted value and number of values measured, by column
+  private int[] columnLengths = new int[0];
+  private int[] columnSamples = new int[0];
+  // conditional formatting: rows of the data area, and once a record takes several rows the
+  // hidden column marking the rows of the even records
+  private int bandFirstRow = -1;
+  private int bandLastRow = -1;
+  private boolean singleRowRecords = true;
+  private int bandCol = -1;
+  // firstRow, lastRow, firstCol, lastCol of each merged region not yet added to the sheet
+  private int[] mergedRegions = new int[64];
+  private int mergedRegionCount;
+
+  // the distinct values among the first strings of a column decide how the rest is stored
+  private static class ColumnStrings {
+    Set<String> sample = new HashSet<>();
+    int count;
+    boolean inline;
+  }
+
+  SheetWriter(WorkbookWriter workbookWriter, Sheet sheet) {
+    this.workbookWriter = workbookWriter;
+    this.sheet = sheet;
+  }
+
+  public String getSheetName() {
+    return this.sheet.getSheetName();
+  }
+
+  void setMetadata(Schema schema, int col, int row) {
+    if (!this.metadataSheet) return;
+    RecordIndex recordIndex = this.recordIndexInterval > 0 ? new RecordIndex() : null;
+    this.metadata = new SheetMetadata(getSheetName(), col, row, schema, recordIndex);
+  }
+
+  void recordStart(long record, int row) {
+    if (this.metadata == null || this.metadata.recordIndex == null) return;
+    if (record % this.recordIndexInterval == 0) this.metadata.recordIndex.add(record, row);
+  }
+
+  private Row getRow(int row) {
+    Row r = this.sheet.getRow(row);
+    if (r == null) return this.sheet.createRow(row);
+    return r;
+  }
+
+  private Cell getCell(int row, int col) {
+    Row r = getRow(row);
+    Cell c = r.getCell(col);
+    if (c == null) return r.createCell(col);
+    return c;
+  }
+
+  void setExportOptions(ExportOptions exportOptions) {
+    this.stringStrategy = exportOptions.getStringStrategy();
+    this.banding = exportOptions.getBanding();
+    this.columnWidthEstimator = exportOptions.getColumnWidthEstimator();
+    this.autoSizeColumns = exportOptions.isAutoSizeColumns();
+    this.layout = exportOptions.getLayout();
+    this.recordIndexInterval = exportOptions.getRecordIndexInterval();
+    this.metadataSheet = exportOptions.isMetadataSheet();
+  }
+
+  private void measure(int col, Object value) {
+    if (this.autoSizeColumns) return;
+    if (col >= this.columnLengths.length) {
+      this.columnLengths = Arrays.copyOf(this.columnLengths, col + 1);
+      this.columnSamples = Arrays.copyOf(this.columnSamples, col + 1);
+    }
+    if (this.columnSamples[col] >= this.columnWidthEstimator.getSampleSize()) return;
+    this.columnSamples[col]++;
+    this.columnLengths[col] = Math.max(this.columnLengths[col], ColumnWidthEstimator.length(value));
+  }
+
+  // without styled zones the value cells get a plain style
+  private boolean isPlain() {
+    return this.banding != ExportOptions.Banding.CELL_STYLES;
+  }
+
+  private void setValueString(Cell c, String value) {
+    if (isInline(c.getColumnIndex(), value)) {
+      CTCell ctCell = ((XSSFCell) c).getCTCell();
+      if (ctCell.isSetV()) ctCell.unsetV();
+      ctCell.setT(STCellType.INLINE_STR);
+      ctCell.setIs(new XSSFRichTextString(value).getCTRst());
+    } else {
+      c.setCellValue(value);
+    }
+  }
+
+  private boolean isInline(int col, String value) {
+    if (this.stringStrategy != ExportOptions.StringStrategy.AUTO)
+      return this.stringStrategy == ExportOptions.StringStrategy.INLINE;
+    if (col >= this.columnStrings.length)
+      this.columnStrings = Arrays.copyOf(this.columnStrings, col + 1);
+    ColumnStrings column = this.columnStrings[col];
+    if (column == null) {
+      column = new ColumnStrings();
+      this.columnStrings[col] = column;
+    }
+    if (column.sample != null) {
+      column.sample.add(value);
+      if (++column.count == STRING_SAMPLE_SIZE) {
+        // mostly distinct values would only grow the shared strings table
+        column.inline = column.sample.size() > STRING_SAMPLE_SIZE / 2;
+        column.sample = null;
+      }
+    }
+    return column.inline;
+  }
+
+  void addMergedRegion(int firstRow, int lastRow, int firstCol, int lastCol) {
+    int pos = this.mergedRegionCount * 4;
+    if (pos == this.mergedRegions.length)
+      this.mergedRegions = Arrays.copyOf(this.mergedRegions, pos * 2);
+    this.mergedRegions[pos] = firstRow;
+    this.mergedRegions[pos + 1] = lastRow;
+    this.mergedRegions[pos + 2] = firstCol;
+    this.mergedRegions[pos + 3] = lastCol;
+    this.mergedRegionCount++;
+  }
+
+  private CellRangeAddress mergedRegion(int idx) {
+    int pos = idx * 4;
+    return new CellRangeAddress(
+        this.mergedRegions[pos],
+        this.mergedRegions[pos + 1],
+        this.mergedRegions[pos + 2],
+        this.mergedRegions[pos + 3]);
+  }
+
+  // the layout never makes regions overlap, so POI's check of every new region against all the
+  // existing ones is skipped, the tests run with assertions enabled and replay it
+  void flushMergedRegions() {
+    if (this.mergedRegionCount == 0) return;
+    assert checkMergedRegions();
+    for (int i = 0; i < this.mergedRegionCount; i++) {
+      this.sheet.addMergedRegionUnsafe(mergedRegion(i));
+    }
+    this.mergedRegionCount = 0;
+  }
+
+  // true, throws IllegalStateException when two regions overlap
+  private boolean checkMergedRegions() {
+    Integer[] order = new Integer[this.mergedRegionCount];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, Comparator.comparingInt(i -> this.mergedRegions[i * 4]));
+    for (int i = 0; i < order.length; i++) {
+      CellRangeAddress region = mergedRegion(order[i]);
+      for (int j = i + 1; j < order.length; j++) {
+        CellRangeAddress other = mergedRegion(order[j]);
+        if (other.getFirstRow() > region.getLastRow()) break;
+        if (region.intersects(other))
+          throw new IllegalStateException(
+              String.format(
+                  "Merged regions %s and %s overlap",
+                  region.formatAsString(), other.formatAsString()));
+      }
+    }
+    return true;
+  }
+
+  public void writeHeaders(int col, int row, HeaderInfo headerInfo, int maxDepth) {
+    Cell c = getCell(row, col);
+    c.setCellValue(headerInfo.text);
+    // a header spanning several columns does not widen the first one
+    if (headerInfo.colSpan == 1 && headerInfo.text != null) measure(col, headerInfo.text);
+    int lastCol = col + headerInfo.colSpan - 1;
+    int lastRow = row;
+    if (headerInfo.subHeaders != null) {
+      int offset = col;
+      for (HeaderInfo subHeader : headerInfo.subHeaders) {
+        writeHeaders(offset, row + (headerInfo.text == null ? 0 : 1), subHeader, maxDepth);
+        offset += subHeader.colSpan;
+      }
+    } else {
+      lastRow = maxDepth - 1;
+    }
+    if (headerInfo.text != null && (col < lastCol || row < lastRow)) {
+      addMergedRegion(row, lastRow, col, lastCol);
+    }
+    this.sheet.createFreezePane(col, maxDepth);
+  }
+
+  public void color(int col, int row, int width, int height, WorkbookWriter.Zone zone) {
+    if (isPlain() && zone != WorkbookWriter.Zone.HEADER) {
+      if (this.banding == ExportOptions.Banding.NONE) return;
+      if (this.bandFirstRow < 0) this.bandFirstRow = row;
+      this.bandLastRow = Math.max(this.bandLastRow, row + height - 1);
+      if (height > 1 && this.singleRowRecords) {
+        // the records before took one row each, every other row is an even one
+        this.singleRowRecords = false;
+        this.bandCol = col + width;
+        for (int r = this.bandFirstRow + 1; r < row; r += 2) {
+          getCell(r, this.bandCol).setCellValue(1);
+        }
+      }
+      if (!this.singleRowRecords && zone == WorkbookWriter.Zone.EVEN) {
+        for (int j = 0; j < height; j++) {
+          getCell(row + j, this.bandCol).setCellValue(1);
+        }
+      }
+      return;
+    }
+    CellStyle style = this.workbookWriter.regularStyle.get(zone);
+    for (int i = 0; i < width; i++) {
+      for (int j = 0; j < height; j++) {
+        getCell(row + j, col + i).setCellStyle(style);
+      }
+    }
+  }
+
+  public void writeRecord(
+      GenericRecord record,
+      HeaderInfo headerInfo,
+      RecordGeometry recordGeometry,
+      int col,
+      int row,
+      int maxDepth,
+      WorkbookWriter.Zone zone) {
+    LOGGER.debug("record: {}", record);
+    LOGGER.debug("recordGeometry: {}", recordGeometry);
+    int offset = col;
+    for (HeaderInfo subHeader : headerInfo.subHeaders) {
+      if (record.hasField(subHeader.text)) {
+        writeObject(
+            record.get(subHeader.text),
+            subHeader,
+            recordGeometry.subRecords.get(subHeader.text),
+            offset,
+            row,
+            maxDepth,
+            zone,
+            0);
+      }
+      offset += subHeader.colSpan;
+    }
+  }
+
+  private void writeIterable(
+      Iterable<?> lst,
+      HeaderInfo headerInfo,
+      RecordGeometry recordGeometry,
+      int col,
+      int row,
+      WorkbookWriter.Zone zone) {
+    int i = 0;
+    int offsetRow = row;
+    for (Object o : lst) {
+      RecordGeometry subList = recordGeometry.subLists.get(i++);
+      int end = offsetRow + subList.rowSpan;
+      writeObject(o, headerInfo, subList, col, offsetRow, end, zone, 0);
+      offsetRow = end;
+    }
+  }
+
+  public void writeList(
+      List<?> lst,
+      HeaderInfo headerInfo,
+      RecordGeometry recordGeometry,
+      int col,
+      int row,
+      int maxDepth,
+      WorkbookWriter.Zone zone) {
+    int offset = col;
+    for (HeaderInfo subHeader : headerInfo.subHeaders) {
+      if ("*size".equals(subHeader.text)) {
+        writeObject(
+            collectionMarker(lst.isEmpty(), "*", recordGeometry.rowSpan),
+            subHeader,
+            RecordGeometry.ATOM,
+            offset,
+            row,
+            maxDepth,
+            zone,
+            recordGeometry.rowSpan);
+      } else if ("*".equals(subHeader.text)) {
+        writeIterable(lst, subHeader, recordGeometry, offset, row, zone);
+      }
+      offset += subHeader.colSpan;
+    }
+  }
+
+  // flat layouts add the number of rows taken by the collection to the marker they do not merge
+  private String collectionMarker(boolean empty, String marker, int rowSpan) {
+    if (empty) return null;
+    return this.layout == ExportOptions.Layout.MERGED
+        ? marker
+        : CollectionDescriptor.flatMarker(marker, rowSpan);
+  }
+
+  public void writeMap(
+      Map<?, ?> map,
+      HeaderInfo headerInfo,
+      RecordGeometry recordGeometry,
+      int col,
+      int row,
+      int maxDepth,
+      WorkbookWriter.Zone zone) {
+    int offset = col;
+    List<Object> keys = new ArrayList<>();
+    List<Object> values = new ArrayList<>();
+    SortedMap<?, ?> sorted = new TreeMap<>(map);
+    for (Map.Entry<?, ?> entry : sorted.entrySet()) {
+      keys.add(entry.getKey());
+      values.add(entry.getValue());
+    }
+    for (HeaderInfo subHeader : headerInfo.subHeaders) {
+      if ("#size".equals(subHeader.text)) {
+        writeObject(
+            collectionMarker(map.isEmpty(), "#", recordGeometry.rowSpan),
+            subHeader,
+            RecordGeometry.ATOM,
+            offset,
+            row,
+            maxDepth,
+            zone,
+            recordGeometry.rowSpan);
+      } else if ("#k".equals(subHeader.text)) {
+        writeIterable(keys, subHeader, recordGeometry, offset, row, zone);
+      } else if ("#v".equals(subHeader.text)) {
+        writeIterable(values, subHeader, recordGeometry, offset, row, zone);
+      }
+      offset += subHeader.colSpan;
+    }
+  }
+
+  public void writeObject(
+      Object value,
+      HeaderInfo headerInfo,
+      RecordGeometry recordGeometry,
+      int col,
+      int row,
+      int maxDepth,
+      WorkbookWriter.Zone zone,
+      int height) {
+    if (value instanceof GenericRecord) {
+      writeRecord((GenericRecord) value, headerInfo, recordGeometry, col, row, maxDepth, zone);
+      return;
+    }
+    if (value instanceof List) {
+      writeList((List<?>) value, headerInfo, recordGeometry, col, row, maxDepth, zone);
+      return;
+    }
+    if (value instanceof Map) {
+      writeMap((Map<?, ?>) value, headerInfo, recordGeometry, col, row, maxDepth, zone);
+      return;
+    }
+    if (value == null) {
+      return;
+    }
+    // case of a scalar value
+    int offset = col;
+    if (headerInfo.subHeaders != null) {
+      for (HeaderInfo subHeader : headerInfo.subHeaders) {
+        if (".value".equals(subHeader.text)) break;
+        offset += subHeader.colSpan;
+      }
+    }
+    measure(offset, value);
+    setValue(getCell(row, offset), value, zone);
+    if (height > 1 && this.layout == ExportOptions.Layout.MERGED) {
+      addMergedRegion(row, row + height - 1, offset, offset);
+    } else if (height == 0 && this.layout == ExportOptions.Layout.FILL_DOWN) {
+      // the copies below are never read back, only the first row of a record is decoded
+      for (int r = row + 1; r < maxDepth; r++) {
+        setValue(getCell(r, offset), value, zone);
+      }
+    }
+  }
+
+  private void setValue(Cell c, Object value, WorkbookWriter.Zone zone) {
+    if (isPlain()) c.setCellStyle(this.workbookWriter.plainStyle);
+    if (value instanceof Number) {
+      c.setCellValue(((Number) value).doubleValue());
+    } else if (value instanceof Boolean) {
+      c.setCellValue((Boolean) value);
+    } else if (value instanceof LocalDate) {
+      c.setCellValue(ExcelDateCodec.fromLocalDate((LocalDate) value, DATE_1904));
+      c.setCellStyle(
+          isPlain()
+              ? this.workbookWriter.plainDateStyle
+              : this.workbookWriter.dateStyle.get(zone));
+    } else if (value instanceof LocalDateTime) {
+      c.setCellValue(ExcelDateCodec.fromLocalDateTime((LocalDateTime) value, DATE_1904));
+      c.setCellStyle(
+          isPlain()
+              ? this.workbookWriter.plainDatetimeStyle
+              : this.workbookWriter.datetimeStyle.get(zone));
+    } else {
+      setValueString(c, String.valueOf(value));
+    }
+  }
+
+  // even records first: the rule added first has the higher priority
+  private void addBanding(int col, int width) {
+    SheetConditionalFormatting formatting = this.sheet.getSheetConditionalFormatting();
+    CellRangeAddress dataRange =
+        new CellRangeAddress(this.bandFirstRow, this.bandLastRow, col, col + width - 1);
+    CellRangeAddress[] data = {dataRange};
+    String formula;
+    if (this.singleRowRecords) {
+      formula = String.format("MOD(ROW()-%d,2)=1", this.bandFirstRow + 1);
+    } else {
+      String bandColumn = CellReference.convertNumToColString(this.bandCol);
+      formula = String.format("$%s%d=1", bandColumn, this.bandFirstRow + 1);
+      this.sheet.setColumnHidden(this.bandCol, true);
+    }
+    formatting.addConditionalFormatting(
+        data, bandRule(formatting, formula, IndexedColors.GREY_25_PERCENT));
+    formatting.addConditionalFormatting(data, bandRule(formatting, "TRUE", IndexedColors.WHITE));
+  }
+
+  private static ConditionalFormattingRule bandRule(
+      SheetConditionalFormatting formatting, String formula, IndexedColors color) {
+    ConditionalFormattingRule rule = formatting.createConditionalFormattingRule(formula);
+    PatternFormatting fill = rule.createPatternFormatting();
+    fill.setFillBackgroundColor(color.getIndex());
+    fill.setFillPattern(PatternFormatting.SOLID_FOREGROUND);
+    BorderFormatting border = rule.createBorderFormatting();
+    border.setBorderBottom(BorderStyle.THIN);
+    border.setBorderLeft(BorderStyle.THIN);
+    border.setBorderRight(BorderStyle.THIN);
+    border.setBorderTop(BorderStyle.THIN);
+    return rule;
+  }
+
+  public void finalize(int col, int width) {
+    if (this.bandFirstRow >= 0) addBanding(col, width);
+    flushMergedRegions();
+    for (int i = col; i < col + width; i++) {
+      if (this.autoSizeColumns) {
+        this.sheet.autoSizeColumn(i, true);
+      } else {
+        int length = i < this.columnLengths.length ? this.columnLengths[i] : 0;
+        this.sheet.setColumnWidth(i, this.columnWidthEstimator.width(length));
+      }
+    }
+  }
+}
@@ -0,0 +1,107 @@
+package org.fanchuo.avroexcel;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// keeps at most BATCH_SIZE records requested, the workbook is written on completion
+public class WorkbookSubscriber implements Flow.Subscriber<GenericRecord> {
+  private static final Logger LOGGER = LoggerFactory.getLogger(WorkbookSubscriber.class);
+  private static final int BATCH_SIZE = 256;
+
+  private final File excelFile;
+  private final String sheetName;
+  private final Schema schema;
+  private final int col;
+  private final int row;
+  private final CompletableFuture<Long> result = new CompletableFuture<>();
+  private Flow.Subscription subscription;
+  private WorkbookWriter workbookWriter;
+  private SheetExporter sheetExporter;
+  private int requested;
+
+  public WorkbookSubscriber(File excelFile, String sheetName, Schema schema, int col, int row) {
+    this.excelFile = excelFile;
+    this.sheetName = sheetName;
+    this.schema = schema;
+    this.col = col;
+    this.row = row;
+  }
+
+  // completes with the record count once the workbook is written
+  public CompletableFuture<Long> getResult() {
+    return result;
+  }
+
+  @Override
+  public void onSubscribe(Flow.Subscription subscription) {
+    if (this.subscription != null) {
+      subscription.cancel();
+      return;
+    }
+    this.subscription = subscription;
+    try {
+      this.workbookWriter = new WorkbookWriter(this.excelFile);
+    } catch (IOException e) {
+      subscription.cancel();
+      this.result.completeExceptionally(e);
+      return;
+    }
+    SheetWriter sheetWriter =
+        this.workbookWriter.createSheet(AvroToExcelConverter.makeSheetname(this.sheetName));
+    this.sheetExporter = new SheetExporter(sheetWriter, this.schema, col, row);
+    this.sheetExporter.writeHeaders();
+    this.requested = BATCH_SIZE;
+    subscription.request(BATCH_SIZE);
+  }
+
+  @Override
+  public void onNext(GenericRecord record) {
+    if (this.result.isDone()) return;
+    try {
+      this.sheetExporter.accept(record);
+    } catch (RuntimeException e) {
+      this.subscription.cancel();
+      fail(e);
+      return;
+    }
+    if (--this.requested <= BATCH_SIZE / 2) {
+      this.subscription.request(BATCH_SIZE - this.requested);
+      this.requested = BATCH_SIZE;
+    }
+  }
+
+  @Override
+  public void onError(Throwable throwable) {
+    fail(throwable);
+  }
+
+  @Override
+  public void onComplete() {
+    if (this.result.isDone()) return;
+    try {
+      this.sheetExporter.finish();
+      this.workbookWriter.close();
+      this.result.complete(this.sheetExporter.getRecordCount());
+    } catch (IOException | RuntimeException e) {
+      this.result.completeExceptionally(e);
+    }
+  }
+
+  private void fail(Throwable throwable) {
+    if (this.result.isDone()) return;
+    if (this.workbookWriter != null) {
+      try {
+        this.workbookWriter.discard();
+      } catch (IOException e) {
+        LOGGER.warn("Failed to close {}", this.excelFile, e);
+      }
+    }
+    this.result.completeExceptionally(throwable);
+  }
+}
@@ -1,21 +1,15 @@
 package org.fanchuo.avroexcel;
 
 import java.io.*;
-import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.util.*;
 import org.apache.avro.generic.GenericRecord;
 import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.ss.util.CellRangeAddress;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.fanchuo.avroexcel.excelutil.SheetMetadata;
 import org.fanchuo.avroexcel.headerinfo.HeaderInfo;
 import org.fanchuo.avroexcel.recordgeometry.RecordGeometry;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 public class WorkbookWriter implements Closeable {
-  private static final Logger LOGGER = LoggerFactory.getLogger(WorkbookWriter.class);
-
   public enum Zone {
     HEADER,
     ODD,
@@ -24,15 +18,30 @@ public class WorkbookWriter implements Closeable {
 
   private final OutputStream outputStream;
   private final Workbook workbook = new XSSFWorkbook();
-  private final Sheet sheet;
-  private final EnumMap<Zone, CellStyle> regularStyle = new EnumMap<>(Zone.class);
-  private final EnumMap<Zone, CellStyle> dateStyle = new EnumMap<>(Zone.class);
-  private final EnumMap<Zone, CellStyle> datetimeStyle = new EnumMap<>(Zone.class);
+  // the sheets share the styles and the shared strings, threads writing them hold this lock
+  final Object workbookLock = new Object();
+  final EnumMap<Zone, CellStyle> regularStyle = new EnumMap<>(Zone.class);
+  final EnumMap<Zone, CellStyle> dateStyle = new EnumMap<>(Zone.class);
+  final EnumMap<Zone, CellStyle> datetimeStyle = new EnumMap<>(Zone.class);
+  // value cells when the zones are not drawn by cell styles
+  final CellStyle plainStyle;
+  final CellStyle plainDateStyle;
+  final CellStyle plainDatetimeStyle;
+  private final SheetWriter defaultSheet;
+  private final List<SheetWriter> sheetWriters = new ArrayList<>();
 
   public WorkbookWriter(File excelFile, String sheetName) throws IOException {
     this(new FileOutputStream(excelFile), sheetName);
   }
 
+  public WorkbookWriter(File excelFile) throws IOException {
+    this(new FileOutputStream(excelFile), null);
+  }
+
+  public WorkbookWriter(OutputStream outputStream) {
+    this(outputStream, null);
+  }
+
   private CellStyle makeColor(IndexedColors indexedColor) {
     CellStyle style = this.workbook.createCellStyle();
     style.setVerticalAlignment(VerticalAlignment.TOP);
@@ -45,8 +54,14 @@ public class WorkbookWriter implements Closeable {
     return style;
   }
 
+  private CellStyle makePlain(short dataFormat) {
+    CellStyle style = this.workbook.createCellStyle();
+    style.setVerticalAlignment(VerticalAlignment.TOP);
+    style.setDataFormat(dataFormat);
+    return style;
+  }
+
   public WorkbookWriter(OutputStream outputStream, String sheetName) {
-    this.sheet = workbook.createSheet(sheetName);
     this.outputStream = outputStream;
     CellStyle headerStyle = this.makeColor(IndexedColors.LIGHT_YELLOW);
     CellStyle regularOddStyle = this.makeColor(IndexedColors.WHITE);
@@ -66,48 +81,30 @@ public class WorkbookWriter implements Closeable {
     this.dateStyle.put(Zone.EVEN, dateEvenStyle);
     this.datetimeStyle.put(Zone.ODD, datetimeOddStyle);
     this.datetimeStyle.put(Zone.EVEN, datetimeEvenStyle);
+    this.plainStyle = this.makePlain((short) 0);
+    this.plainDateStyle = this.makePlain((short) 14);
+    this.plainDatetimeStyle = this.makePlain((short) 22);
+    this.defaultSheet = sheetName == null ? null : createSheet(sheetName);
   }
 
-  private Row getRow(int row) {
-    Row r = this.sheet.getRow(row);
-    if (r == null) return this.sheet.createRow(row);
-    return r;
+  public synchronized SheetWriter createSheet(String sheetName) {
+    SheetWriter sheetWriter = new SheetWriter(this, this.workbook.createSheet(sheetName));
+    this.sheetWriters.add(sheetWriter);
+    return sheetWriter;
   }
 
-  private Cell getCell(int row, int col) {
-    Row r = getRow(row);
-    Cell c = r.getCell(col);
-    if (c == null) return r.createCell(col);
-    return c;
+  private SheetWriter defaultSheet() {
+    if (this.defaultSheet == null)
+      throw new IllegalStateException("No default sheet, use createSheet to add sheets");
+    return this.defaultSheet;
   }
 
   public void writeHeaders(int col, int row, HeaderInfo headerInfo, int maxDepth) {
-    Cell c = getCell(row, col);
-    c.setCellValue(headerInfo.text);
-    int lastCol = col + headerInfo.colSpan - 1;
-    int lastRow = row;
-    if (headerInfo.subHeaders != null) {
-      int offset = col;
-      for (HeaderInfo subHeader : headerInfo.subHeaders) {
-        writeHeaders(offset, row + (headerInfo.text == null ? 0 : 1), subHeader, maxDepth);
-        offset += subHeader.colSpan;
-      }
-    } else {
-      lastRow = maxDepth - 1;
-    }
-    if (headerInfo.text != null && (col < lastCol || row < lastRow)) {
-      CellRangeAddress range = new CellRangeAddress(row, lastRow, col, lastCol);
-      sheet.addMergedRegion(range);
-    }
-    this.sheet.createFreezePane(col, maxDepth);
+    defaultSheet().writeHeaders(col, row, headerInfo, maxDepth);
   }
 
   public void color(int col, int row, int width, int height, Zone zone) {
-    for (int i = 0; i < width; i++) {
-      for (int j = 0; j < height; j++) {
-        getCell(row + j, col + i).setCellStyle(this.regularStyle.get(zone));
-      }
-    }
+    defaultSheet().color(col, row, width, height, zone);
   }
 
   public void writeRecord(
@@ -118,40 +115,7 @@ public class WorkbookWriter implements Closeable {
       int row,
       int maxDepth,
       Zone zone) {
-    LOGGER.debug("record: {}", record);
-    LOGGER.debug("recordGeometry: {}", recordGeometry);
-    int offset = col;
-    for (HeaderInfo subHeader : headerInfo.subHeaders) {
-      if (record.hasField(subHeader.text)) {
-        writeObject(
-            record.get(subHeader.text),
-            subHeader,
-            recordGeometry.subRecords.get(subHeader.text),
-            offset,
-            row,
-            maxDepth,
-            zone,
-            0);
-      }
-      offset += subHeader.colSpan;
-    }
-  }
-
-  private void writeIterable(
-      Iterable<?> lst,
-      HeaderInfo headerInfo,
-      RecordGeometry recordGeometry,
-      int col,
-      int row,
-      Zone zone) {
-    int i = 0;
-    int offsetRow = row;
-    for (Object o : lst) {
-      RecordGeometry subList = recordGeometry.subLists.get(i++);
-      int end = offsetRow + subList.rowSpan;
-      writeObject(o, headerInfo, subList, col, offsetRow, end, zone, 0);
-      offsetRow = end;
-    }
+    defaultSheet().writeRecord(record, headerInfo, recordGeometry, col, row, maxDepth, zone);
   }
 
   public void writeList(
@@ -162,23 +126,7 @@ public class WorkbookWriter implements Closeable {
       int row,
       int maxDepth,
       Zone zone) {
-    int offset = col;
-    for (HeaderInfo subHeader : headerInfo.subHeaders) {
-      if ("*size".equals(subHeader.text)) {
-        writeObject(
-            !lst.isEmpty() ? "*" : null,
-            subHeader,
-            RecordGeometry.ATOM,
-            offset,
-            row,
-            maxDepth,
-            zone,
-            recordGeometry.rowSpan);
-      } else if ("*".equals(subHeader.text)) {
-        writeIterable(lst, subHeader, recordGeometry, offset, row, zone);
-      }
-      offset += subHeader.colSpan;
-    }
+    defaultSheet().writeList(lst, headerInfo, recordGeometry, col, row, maxDepth, zone);
   }
 
   public void writeMap(
@@ -189,32 +137,7 @@ public class WorkbookWriter implements Closeable {
       int row,
       int maxDepth,
       Zone zone) {
-    int offset = col;
-    List<Object> keys = new ArrayList<>();
-    List<Object> values = new ArrayList<>();
-    SortedMap<?, ?> sorted = new TreeMap<>(map);
-    for (Map.Entry<?, ?> entry : sorted.entrySet()) {
-      keys.add(entry.getKey());
-      values.add(entry.getValue());
-    }
-    for (HeaderInfo subHeader : headerInfo.subHeaders) {
-      if ("#size".equals(subHeader.text)) {
-        writeObject(
-            !map.isEmpty() ? "#" : null,
-            subHeader,
-            RecordGeometry.ATOM,
-            offset,
-            row,
-            maxDepth,
-            zone,
-            recordGeometry.rowSpan);
-      } else if ("#k".equals(subHeader.text)) {
-        writeIterable(keys, subHeader, recordGeometry, offset, row, zone);
-      } else if ("#v".equals(subHeader.text)) {
-        writeIterable(values, subHeader, recordGeometry, offset, row, zone);
-      }
-      offset += subHeader.colSpan;
-    }
+    defaultSheet().writeMap(map, headerInfo, recordGeometry, col, row, maxDepth, zone);
   }
 
   public void writeObject(
@@ -226,58 +149,32 @@ public class WorkbookWriter implements Closeable {
       int maxDepth,
       Zone zone,
       int height) {
-    if (value instanceof GenericRecord) {
-      writeRecord((GenericRecord) value, headerInfo, recordGeometry, col, row, maxDepth, zone);
-      return;
-    }
-    if (value instanceof List) {
-      writeList((List<?>) value, headerInfo, recordGeometry, col, row, maxDepth, zone);
-      return;
-    }
-    if (value instanceof Map) {
-      writeMap((Map<?, ?>) value, headerInfo, recordGeometry, col, row, maxDepth, zone);
-      return;
-    }
-    if (value == null) {
-      return;
-    }
-    // case of a scalar value
-    int offset = col;
-    if (headerInfo.subHeaders != null) {
-      for (HeaderInfo subHeader : headerInfo.subHeaders) {
-        if (".value".equals(subHeader.text)) break;
-        offset += subHeader.colSpan;
-      }
-    }
-    Cell c = getCell(row, offset);
-    if (value instanceof Number) {
-      c.setCellValue(((Number) value).doubleValue());
-    } else if (value instanceof Boolean) {
-      c.setCellValue((Boolean) value);
-    } else if (value instanceof LocalDate) {
-      c.setCellValue((LocalDate) value);
-      c.setCellStyle(this.dateStyle.get(zone));
-    } else if (value instanceof LocalDateTime) {
-      c.setCellValue((LocalDateTime) value);
-      c.setCellStyle(this.datetimeStyle.get(zone));
-    } else {
-      c.setCellValue(String.valueOf(value));
-    }
-    if (height > 1) {
-      CellRangeAddress range = new CellRangeAddress(row, row + height - 1, offset, offset);
-      this.sheet.addMergedRegion(range);
-    }
+    defaultSheet().writeObject(value, headerInfo, recordGeometry, col, row, maxDepth, zone, height);
   }
 
   public void finalize(int col, int width) {
-    for (int i = col; i < col + width; i++) {
-      this.sheet.autoSizeColumn(i, true);
+    defaultSheet().finalize(col, width);
+  }
+
+  // closes the output without writing the workbook
+  void discard() throws IOException {
+    try {
+      workbook.close();
+    } finally {
+      this.outputStream.close();
     }
   }
 
   @Override
   public void close() throws IOException {
     try {
+      // sheets that were not finalized still get their merged regions
+      List<SheetMetadata> metadata = new ArrayList<>();
+      for (SheetWriter sheetWriter : this.sheetWriters) {
+        sheetWriter.flushMergedRegions();
+        if (sheetWriter.metadata != null) metadata.add(sheetWriter.metadata);
+      }
+      if (!metadata.isEmpty()) SheetMetadata.write(this.workbook, metadata);
       workbook.write(this.outputStream);
     } finally {
       this.outputStream.close();
@@ -7,9 +7,11 @@ import org.apache.avro.Schema;
 import org.apache.avro.generic.GenericData;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellType;
-import org.apache.poi.ss.usermodel.DateUtil;
 import org.apache.poi.ss.util.CellAddress;
+import org.fanchuo.avroexcel.excelutil.CellData;
 import org.fanchuo.avroexcel.excelutil.ErrorMessage;
+import org.fanchuo.avroexcel.excelutil.ExcelDateCodec;
+import org.fanchuo.avroexcel.excelutil.ExcelSheetReader;
 import org.fanchuo.avroexcel.excelutil.FormatErrorMessage;
 import org.fanchuo.avroexcel.excelutil.TimestampParser;
 
@@ -18,7 +20,7 @@ public class ExcelFieldParser {
     public ErrorMessage errorMessage;
     public Object value;
 
-    public abstract void analyze(Schema schema, Cell cell, CellAddress address);
+    public abstract void analyze(Schema schema, CellData cell, CellAddress address);
 
     public boolean isCompatible() {
       return errorMessage == null;
@@ -27,9 +29,10 @@ public class ExcelFieldParser {
 
   static class EnumExcelFieldParser extends TypeParser {
     @Override
-    public void analyze(Schema schema, Cell cell, CellAddress address) {
-      if (cell.getCellType() == CellType.STRING) {
-        String str = cell.getStringCellValue();
+    public void analyze(Schema schema, CellData cell, CellAddress address) {
+      CellType cellType = cell.cellType;
+      if (cellType == CellType.STRING) {
+        String str = cell.stringValue;
         if (schema.getEnumSymbols().contains(str)) {
           this.errorMessage = null;
           this.value = new GenericData.EnumSymbol(schema, str);
@@ -40,20 +43,21 @@ public class ExcelFieldParser {
         }
       } else {
         this.errorMessage =
-            new FormatErrorMessage("Cell type '%s' is not STRING", address, cell.getCellType());
+            new FormatErrorMessage("Cell type '%s' is not STRING", address, cellType);
       }
     }
   }
 
   static class StringExcelFieldParser extends TypeParser {
     @Override
-    public void analyze(Schema schema, Cell cell, CellAddress address) {
-      if (cell.getCellType() == CellType.STRING) {
+    public void analyze(Schema schema, CellData cell, CellAddress address) {
+      CellType cellType = cell.cellType;
+      if (cellType == CellType.STRING) {
         this.errorMessage = null;
-        this.value = cell.getStringCellValue();
+        this.value = cell.stringValue;
       } else {
         this.errorMessage =
-            new FormatErrorMessage("Cell type '%s' is not STRING", address, cell.getCellType());
+            new FormatErrorMessage("Cell type '%s' is not STRING", address, cellType);
       }
     }
   }
@@ -76,26 +80,28 @@ public class ExcelFieldParser {
     abstract T getIntValue(double v);
 
     @Override
-    public void analyze(Schema schema, Cell cell, CellAddress address) {
+    public void analyze(Schema schema, CellData cell, CellAddress address) {
+      CellType cellType = cell.cellType;
       String logicalType =
           schema.getLogicalType() == null ? null : schema.getLogicalType().getName();
       if (logicalType != null && LOCALDATE_LOGICAL_TYPES.contains(logicalType)) {
-        if (cell.getCellType() == CellType.NUMERIC && DateUtil.isCellDateFormatted(cell)) {
+        if (cell.isDateFormatted()) {
           this.errorMessage = null;
+          double serial = cell.numericValue;
+          boolean date1904 = cell.date1904;
           if ("date".equals(logicalType))
-            this.value = cell.getLocalDateTimeCellValue().toLocalDate();
-          else if (logicalType.startsWith("time-"))
-            this.value = cell.getLocalDateTimeCellValue().toLocalTime();
-          else this.value = cell.getLocalDateTimeCellValue();
+            this.value = ExcelDateCodec.toLocalDate(serial, date1904);
+          else if (logicalType.startsWith("time-")) this.value = ExcelDateCodec.toLocalTime(serial);
+          else this.value = ExcelDateCodec.toLocalDateTime(serial, date1904);
         } else {
           this.errorMessage =
               new FormatErrorMessage(
                   "Not a date cell type (type: %s, format: %s)",
-                  address, cell.getCellType(), cell.getCellStyle().getDataFormat());
+                  address, cellType, cell.dataFormat);
         }
       } else if (TIMESTAMP_LOGICAL_TYPES.contains(logicalType)) {
-        if (cell.getCellType() == CellType.STRING) {
-          Instant instant = TimestampParser.parseDate(cell);
+        if (cellType == CellType.STRING) {
+          Instant instant = TimestampParser.parse(cell.stringValue);
           if (instant != null) {
             this.errorMessage = null;
             this.value = instant;
@@ -105,14 +111,14 @@ public class ExcelFieldParser {
           }
         } else {
           this.errorMessage =
-              new FormatErrorMessage("Cell type '%s' is not STRING", address, cell.getCellType());
+              new FormatErrorMessage("Cell type '%s' is not STRING", address, cellType);
         }
-      } else if (cell.getCellType() == CellType.NUMERIC) {
+      } else if (cellType == CellType.NUMERIC) {
         this.errorMessage = null;
-        this.value = getIntValue(cell.getNumericCellValue());
+        this.value = getIntValue(cell.numericValue);
       } else {
         this.errorMessage =
-            new FormatErrorMessage("Cell type '%s' is not NUMERIC", address, cell.getCellType());
+            new FormatErrorMessage("Cell type '%s' is not NUMERIC", address, cellType);
       }
     }
   }
@@ -135,13 +141,14 @@ public class ExcelFieldParser {
     abstract T getFloatValue(double v);
 
     @Override
-    public void analyze(Schema schema, Cell cell, CellAddress address) {
-      if (cell.getCellType() == CellType.NUMERIC) {
+    public void analyze(Schema schema, CellData cell, CellAddress address) {
+      CellType cellType = cell.cellType;
+      if (cellType == CellType.NUMERIC) {
         this.errorMessage = null;
-        this.value = getFloatValue(cell.getNumericCellValue());
+        this.value = getFloatValue(cell.numericValue);
       } else {
         this.errorMessage =
-            new FormatErrorMessage("Cell type '%s' is not NUMERIC", address, cell.getCellType());
+            new FormatErrorMessage("Cell type '%s' is not NUMERIC", address, cellType);
       }
     }
   }
@@ -162,20 +169,28 @@ public class ExcelFieldParser {
 
   static class BooleanExcelFieldParser extends TypeParser {
     @Override
-    public void analyze(Schema schema, Cell cell, CellAddress address) {
-      if (cell.getCellType() == CellType.BOOLEAN || cell.getCellType() == CellType.FORMULA) {
+    public void analyze(Schema schema, CellData cell, CellAddress address) {
+      CellType cellType = cell.cellType;
+      if (cellType == CellType.BOOLEAN) {
         this.errorMessage = null;
-        this.value = cell.getBooleanCellValue();
+        this.value = cell.booleanValue;
       } else {
         this.errorMessage =
-            new FormatErrorMessage("Cell type '%s' is not BOOLEAN", address, cell.getCellType());
+            new FormatErrorMessage("Cell type '%s' is not BOOLEAN", address, cellType);
       }
     }
   }
 
   private final EnumMap<Schema.Type, TypeParser> registry = new EnumMap<>(Schema.Type.class);
+  // reads the POI cells given to checkCompatible, null to read them without the caches
+  private final ExcelSheetReader excelSheetReader;
 
   public ExcelFieldParser() {
+    this(null);
+  }
+
+  public ExcelFieldParser(ExcelSheetReader excelSheetReader) {
+    this.excelSheetReader = excelSheetReader;
     registry.put(Schema.Type.ENUM, new EnumExcelFieldParser());
     registry.put(Schema.Type.STRING, new StringExcelFieldParser());
     registry.put(Schema.Type.INT, new IntExcelFieldParser());
@@ -186,6 +201,10 @@ public class ExcelFieldParser {
   }
 
   public TypeParser checkCompatible(Schema s, Cell cell, CellAddress address) {
+    return checkCompatible(s, CellData.of(cell, this.excelSheetReader), address);
+  }
+
+  public TypeParser checkCompatible(Schema s, CellData cell, CellAddress address) {
     List<Schema> schemas = ParserTools.flatten(s, x -> registry.containsKey(x.getType()));
     TypeParser stringTypeParser = null;
     for (Schema schema : schemas) {
@@ -0,0 +1,116 @@
+package org.fanchuo.avroexcel.encoder;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericRecord;
+import org.fanchuo.avroexcel.excelutil.ExcelSheetReader;
+import org.fanchuo.avroexcel.excelutil.RecordIndex;
+import org.fanchuo.avroexcel.headerinfo.HeaderInfo;
+
+// splits the rows [row, endRow) on record boundaries, each part decodes with its own ExcelToAvro
+public class ExcelRecordSpliterator implements Spliterator<GenericRecord> {
+  private static final int MIN_SPLIT_ROWS = 128;
+
+  private final ExcelSheetReader sheet;
+  private final Schema schema;
+  private final HeaderInfo headerInfo;
+  private final int col;
+  private final boolean skipUnmappedColumns;
+  private final ExcelToAvro excelToAvro;
+  private int endRow;
+
+  public ExcelRecordSpliterator(
+      ExcelSheetReader sheet, Schema schema, HeaderInfo headerInfo, int col, int row) {
+    this(sheet, schema, headerInfo, col, row, false);
+  }
+
+  public ExcelRecordSpliterator(
+      ExcelSheetReader sheet,
+      Schema schema,
+      HeaderInfo headerInfo,
+      int col,
+      int row,
+      boolean skipUnmappedColumns) {
+    this(sheet, schema, headerInfo, col, row, skipUnmappedColumns, sheet.getLastRowNum() + 1);
+  }
+
+  private ExcelRecordSpliterator(
+      ExcelSheetReader sheet,
+      Schema schema,
+      HeaderInfo headerInfo,
+      int col,
+      int row,
+      boolean skipUnmappedColumns,
+      int endRow) {
+    this.sheet = sheet;
+    this.schema = schema;
+    this.headerInfo = headerInfo;
+    this.col = col;
+    this.skipUnmappedColumns = skipUnmappedColumns;
+    this.excelToAvro = new ExcelToAvro(sheet, schema, headerInfo, col, row, skipUnmappedColumns);
+    this.endRow = endRow;
+  }
+
+  @Override
+  public boolean tryAdvance(Consumer<? super GenericRecord> action) {
+    if (this.excelToAvro.getRow() >= this.endRow) return false;
+    GenericRecord record;
+    try {
+      record = this.excelToAvro.readRecord();
+    } catch (ExcelSchemaException e) {
+      throw new UncheckedExcelSchemaException(e);
+    }
+    if (record == null) {
+      // an empty line ends the data
+      this.endRow = this.excelToAvro.getRow();
+      return false;
+    }
+    action.accept(record);
+    return true;
+  }
+
+  @Override
+  public Spliterator<GenericRecord> trySplit() {
+    int row = this.excelToAvro.getRow();
+    if (this.endRow - row < MIN_SPLIT_ROWS) return null;
+    int middle = row + (this.endRow - row) / 2;
+    // the rows are cut in half and the record boundary is searched around the middle row only
+    int boundary = this.excelToAvro.recordStart(middle, indexedBoundary(row, middle));
+    if (boundary <= row) {
+      int rowSpan = this.excelToAvro.recordSpan(row);
+      if (rowSpan <= 0) {
+        this.endRow = row;
+        return null;
+      }
+      boundary = row + rowSpan;
+    }
+    if (boundary >= this.endRow) return null;
+    ExcelRecordSpliterator prefix =
+        new ExcelRecordSpliterator(
+            sheet, schema, headerInfo, col, row, skipUnmappedColumns, boundary);
+    this.excelToAvro.setRow(boundary);
+    return prefix;
+  }
+
+  // with a record index the upward search stops at the last indexed record before the middle
+  private int indexedBoundary(int row, int middle) {
+    RecordIndex recordIndex = this.excelToAvro.getRecordIndex();
+    if (recordIndex == null) return row;
+    int i = recordIndex.floorRow(middle);
+    if (i < 0 || recordIndex.getRow(i) <= row) return row;
+    return recordIndex.getRow(i);
+  }
+
+  // an estimate only: the rows left, which is more than the records left when they take several
+  // rows, so the spliterator does not report SIZED
+  @Override
+  public long estimateSize() {
+    return Math.max(0, this.endRow - this.excelToAvro.getRow());
+  }
+
+  @Override
+  public int characteristics() {
+    return ORDERED | NONNULL | IMMUTABLE;
+  }
+}
@@ -2,44 +2,237 @@ package org.fanchuo.avroexcel.encoder;
 
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import org.apache.avro.Schema;
 import org.apache.avro.generic.GenericRecord;
-import org.apache.poi.ss.usermodel.Cell;
-import org.apache.poi.ss.usermodel.CellType;
 import org.apache.poi.ss.util.CellAddress;
+import org.fanchuo.avroexcel.excelutil.CellData;
+import org.fanchuo.avroexcel.excelutil.CellGrid;
 import org.fanchuo.avroexcel.excelutil.CompositeErrorMessage;
 import org.fanchuo.avroexcel.excelutil.ErrorMessage;
 import org.fanchuo.avroexcel.excelutil.ExcelSheetReader;
 import org.fanchuo.avroexcel.excelutil.FormatErrorMessage;
+import org.fanchuo.avroexcel.excelutil.RecordIndex;
+import org.fanchuo.avroexcel.excelutil.SheetMetadata;
+import org.fanchuo.avroexcel.excelutil.SheetRows;
 import org.fanchuo.avroexcel.headerinfo.CollectionDescriptor;
 import org.fanchuo.avroexcel.headerinfo.HeaderInfo;
+import org.fanchuo.avroexcel.headerinfo.RecordSpanScanner;
 import org.fanchuo.avroexcel.recordgeometry.RecordGeometry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class ExcelToAvro {
   private static final Logger LOGGER = LoggerFactory.getLogger(ExcelToAvro.class);
+  private static final Set<String> SPECIAL_COLUMNS =
+      new HashSet<>(Arrays.asList("*size", "#size", "#k", ".value"));
 
   private final ExcelSheetReader sheet;
   private final Schema schema;
   private final HeaderInfo headerInfo;
   private final int col;
-  private final ExcelFieldParser excelFieldParser = new ExcelFieldParser();
+  private final int firstRow;
+  private final ExcelFieldParser excelFieldParser;
+  private final boolean skipUnmappedColumns;
+  private final Set<HeaderInfo> skippedHeaders = Collections.newSetFromMap(new IdentityHashMap<>());
+  private final List<String> skippedColumns = new ArrayList<>();
+  private final List<Integer> markerColumns;
+  // columns copied for each record, see SheetRows
+  private final boolean[] copiedColumns;
   private int row;
+  // the cells read by visitObject: the copied rows of the record, or the sheet under its lock
+  private CellGrid cells;
 
   public ExcelToAvro(
       ExcelSheetReader sheet, Schema schema, HeaderInfo headerInfo, int col, int row) {
+    this(sheet, schema, headerInfo, col, row, false);
+  }
+
+  // skipUnmappedColumns: header subtrees without a matching field are never read
+  public ExcelToAvro(
+      ExcelSheetReader sheet,
+      Schema schema,
+      HeaderInfo headerInfo,
+      int col,
+      int row,
+      boolean skipUnmappedColumns) {
     this.sheet = sheet;
+    this.excelFieldParser = new ExcelFieldParser(sheet);
     this.schema = schema;
     this.headerInfo = headerInfo;
     this.col = col;
+    this.firstRow = row;
+    this.row = row;
+    this.markerColumns = RecordSpanScanner.markerColumns(col, headerInfo);
+    this.skipUnmappedColumns = skipUnmappedColumns;
+    if (skipUnmappedColumns) planSkipped(headerInfo, Collections.singletonList(schema), "");
+    this.copiedColumns = new boolean[headerInfo.colSpan];
+    Arrays.fill(this.copiedColumns, true);
+    leaveOutSkipped(col, headerInfo);
+  }
+
+  // the skipped subtrees are not copied, except the collection markers that give their height
+  private void leaveOutSkipped(int col, HeaderInfo headerInfo) {
+    if (headerInfo.subHeaders == null) return;
+    int colPos = col;
+    for (HeaderInfo subHeader : headerInfo.subHeaders) {
+      if (this.skippedHeaders.contains(subHeader)) {
+        int from = colPos - this.col;
+        Arrays.fill(this.copiedColumns, from, from + subHeader.colSpan, false);
+        for (int markerCol : RecordSpanScanner.markerColumns(colPos, subHeader)) {
+          this.copiedColumns[markerCol - this.col] = true;
+        }
+      } else {
+        leaveOutSkipped(colPos, subHeader);
+      }
+      colPos += subHeader.colSpan;
+    }
+  }
+
+  private void planSkipped(HeaderInfo headerInfo, List<Schema> schemas, String prefix) {
+    if (headerInfo.subHeaders == null) return;
+    List<Schema> recordSchemas =
+        ParserTools.flatten(schemas, x -> x.getType() == Schema.Type.RECORD);
+    for (HeaderInfo subHeader : headerInfo.subHeaders) {
+      if ("*".equals(subHeader.text)) {
+        List<Schema> elementSchemas = new ArrayList<>();
+        for (Schema s : ParserTools.flatten(schemas, x -> x.getType() == Schema.Type.ARRAY)) {
+          elementSchemas.add(s.getElementType());
+        }
+        planSkipped(subHeader, elementSchemas, prefix + "*.");
+      } else if ("#v".equals(subHeader.text)) {
+        List<Schema> valueSchemas = new ArrayList<>();
+        for (Schema s : ParserTools.flatten(schemas, x -> x.getType() == Schema.Type.MAP)) {
+          valueSchemas.add(s.getValueType());
+        }
+        planSkipped(subHeader, valueSchemas, prefix + "#v.");
+      } else if (!SPECIAL_COLUMNS.contains(subHeader.text)) {
+        List<Schema> subSchemas = new ArrayList<>();
+        for (Schema recordSchema : recordSchemas) {
+          Schema.Field field = recordSchema.getField(subHeader.text);
+          if (field != null) subSchemas.add(field.schema());
+        }
+        if (subSchemas.isEmpty()) {
+          this.skippedHeaders.add(subHeader);
+          this.skippedColumns.add(prefix + subHeader.text);
+        } else {
+          planSkipped(subHeader, subSchemas, prefix + subHeader.text + ".");
+        }
+      }
+    }
+  }
+
+  public List<String> getSkippedColumns() {
+    return Collections.unmodifiableList(skippedColumns);
+  }
+
+  // rows taken by the record starting at this row, -1 on an empty line
+  public int recordSpan(int row) {
+    synchronized (this.sheet.getWorkbookLock()) {
+      return RecordSpanScanner.recordSpan(
+          this.sheet, this.col, row, this.headerInfo, this.skippedHeaders);
+    }
+  }
+
+  // the start of the record holding this row, searched upwards down to a known record start:
+  // only the first row of a record has collection markers, the rows without are records of one row
+  public int recordStart(int row, int knownStart) {
+    synchronized (this.sheet.getWorkbookLock()) {
+      int start = row;
+      while (start > knownStart
+          && !RecordSpanScanner.hasMarker(this.sheet, this.markerColumns, start)) {
+        start--;
+      }
+      if (start == row) return row;
+      int rowSpan =
+          RecordSpanScanner.recordSpan(
+              this.sheet, this.col, start, this.headerInfo, this.skippedHeaders);
+      return start + rowSpan > row ? start : row;
+    }
+  }
+
+  public int getRow() {
+    return this.row;
+  }
+
+  public void setRow(int row) {
     this.row = row;
   }
 
+  // the record starts saved by the export, null unless the sheet was exported at this column and
+  // its metadata can be read
+  public RecordIndex getRecordIndex() {
+    SheetMetadata metadata = this.sheet.findMetadata();
+    if (metadata == null || metadata.col != this.col) return null;
+    return metadata.recordIndex;
+  }
+
+  // moves to a record, numbered from the row given to the constructor, false past the last one
+  public boolean seek(long record) {
+    int position = this.firstRow;
+    long current = 0;
+    RecordIndex recordIndex = getRecordIndex();
+    // the index numbers the records from the first data row of the export
+    if (recordIndex != null && recordIndex.getRow(0) == this.firstRow) {
+      int i = recordIndex.floorRecord(record);
+      if (i >= 0) {
+        position = recordIndex.getRow(i);
+        current = recordIndex.getRecord(i);
+      }
+    }
+    for (; current < record; current++) {
+      int rowSpan = recordSpan(position);
+      if (rowSpan <= 0) break;
+      position += rowSpan;
+    }
+    this.row = position;
+    if (current != record) return false;
+    synchronized (this.sheet.getWorkbookLock()) {
+      return !RecordSpanScanner.emptyLine(this.sheet, this.col, position, this.headerInfo);
+    }
+  }
+
+  // the records from the current row, the stream can be made parallel
+  public Stream<GenericRecord> stream() {
+    return StreamSupport.stream(
+        new ExcelRecordSpliterator(
+            this.sheet, this.schema, this.headerInfo, this.col, this.row, this.skipUnmappedColumns),
+        false);
+  }
+
+  // the rows of the record are copied under the workbook lock, then decoded without it, so
+  // several ExcelToAvro on the same workbook decode at the same time
   public GenericRecord readRecord() throws ExcelSchemaException {
+    return decode(copyRecord());
+  }
+
+  // the rows of the record at the current row
+  SheetRows copyRecord() {
+    SheetRows rows = new SheetRows(this.sheet, this.col, this.copiedColumns, this.row);
+    synchronized (this.sheet.getWorkbookLock()) {
+      int rowSpan =
+          RecordSpanScanner.recordSpan(
+              rows, this.col, this.row, this.headerInfo, this.skippedHeaders);
+      rows.copyTo(this.row + Math.max(1, rowSpan));
+      rows.detach();
+    }
+    return rows;
+  }
+
+  GenericRecord decode(SheetRows rows) throws ExcelSchemaException {
     Schema s = Schema.createUnion(this.schema, Schema.create(Schema.Type.NULL));
-    ExcelRecord excelRecords =
-        visitObject(this.col, this.row, Collections.singletonList(s), this.headerInfo);
+    List<Schema> schemas = Collections.singletonList(s);
+    this.cells = rows;
+    ExcelRecord excelRecords = visitObject(this.col, this.row, schemas, this.headerInfo);
+    if (!rows.isComplete()) {
+      // a malformed record reads cells past the rows of its span, it is decoded from the sheet
+      synchronized (this.sheet.getWorkbookLock()) {
+        this.cells = this.sheet;
+        excelRecords = visitObject(this.col, this.row, schemas, this.headerInfo);
+      }
+    }
+    this.cells = null;
     if (excelRecords.candidates.isEmpty()) {
       CellAddress address = new CellAddress(this.row, this.col);
       CompositeErrorMessage compositeErrorMessage = new CompositeErrorMessage();
@@ -60,7 +253,7 @@ public class ExcelToAvro {
 
   private ExcelRecord visitScalar(int col, int row, List<Schema> schemas) {
     LOGGER.debug("visitScalar : col: {}, row: {}, schemas: {}", col, row, schemas);
-    Cell c = sheet.getCell(col, row);
+    CellData c = this.cells.getData(col, row);
     Map<Schema, Object> excelRecords = new HashMap<>();
     Map<Schema, ErrorMessage> failure = new HashMap<>();
     for (Schema schema : schemas) {
@@ -83,9 +276,8 @@ public class ExcelToAvro {
   }
 
   private boolean checkNotBlank(int col, int row) {
-    Cell cell = this.sheet.getCell(col, row);
-    if (cell == null) return false;
-    return cell.getCellType() != CellType.BLANK;
+    CellData cell = this.cells.getData(col, row);
+    return cell != null && !cell.isBlank();
   }
 
   private ExcelRecord visitObject(int col, int row, List<Schema> schemas, HeaderInfo headerInfo) {
@@ -108,21 +300,26 @@ public class ExcelToAvro {
     CollectionDescriptor mapCol = null;
     CollectionDescriptor keyCol = null;
     CollectionDescriptor valueCol = null;
+    int skippedSpan = 0;
     List<Schema> recordSubSchemas =
         ParserTools.flatten(schemas, x -> x.getType() == Schema.Type.RECORD);
     for (HeaderInfo subHeader : headerInfo.subHeaders) {
       if ("*size".equals(subHeader.text)) {
-        arraySize = CollectionDescriptor.extractCollectionSize(this.sheet, colIdx, row);
+        arraySize = CollectionDescriptor.extractCollectionSize(this.cells, colIdx, row);
       } else if ("*".equals(subHeader.text)) {
         arrayCol = new CollectionDescriptor(colIdx, subHeader);
       } else if ("#size".equals(subHeader.text)) {
-        mapSize = CollectionDescriptor.extractCollectionSize(this.sheet, colIdx, row);
+        mapSize = CollectionDescriptor.extractCollectionSize(this.cells, colIdx, row);
       } else if ("#k".equals(subHeader.text)) {
         keyCol = new CollectionDescriptor(colIdx, subHeader);
       } else if ("#v".equals(subHeader.text)) {
         mapCol = new CollectionDescriptor(colIdx, subHeader);
       } else if (".value".equals(subHeader.text)) {
         valueCol = new CollectionDescriptor(colIdx, subHeader);
+      } else if (this.skippedHeaders.contains(subHeader)) {
+        // not decoded, but a collection in it can still make the record taller
+        skippedSpan =
+            Math.max(skippedSpan, RecordSpanScanner.markerSpan(cells, colIdx, row, subHeader));
       } else {
         List<Schema> subSchema = new ArrayList<>();
         for (Schema schema : recordSubSchemas) {
@@ -173,7 +370,7 @@ public class ExcelToAvro {
       case SCALAR:
         return visitScalar(valueCol.col, row, schemas);
       case RECORD:
-        return visitRecord(subRecords, schemas, address);
+        return visitRecord(subRecords, schemas, address, skippedSpan);
       default:
         return ParserTools.visitNull(schemas, address);
     }
@@ -207,11 +404,14 @@ public class ExcelToAvro {
   }
 
   private ExcelRecord visitRecord(
-      Map<String, ExcelRecord> subRecords, List<Schema> schemas, CellAddress address) {
+      Map<String, ExcelRecord> subRecords,
+      List<Schema> schemas,
+      CellAddress address,
+      int skippedSpan) {
     LOGGER.debug("visitRecord : subRecords: {}, schemas: {}", subRecords, schemas);
     Map<Schema, Object> candidates = new HashMap<>();
     Map<Schema, ErrorMessage> failures = new HashMap<>();
-    int rowSpan = 0;
+    int rowSpan = skippedSpan;
     Map<String, RecordGeometry> map = new HashMap<>();
     for (Map.Entry<String, ExcelRecord> entry : subRecords.entrySet()) {
       rowSpan = Math.max(rowSpan, entry.getValue().recordGeometry.rowSpan);
@@ -299,7 +499,9 @@ public class ExcelToAvro {
     int rowSpan = 0;
     List<RecordGeometry> subList = new ArrayList<>();
     while (rowSpan < collectionSize) {
-      String k = sheet.getCell(keyCol, rowIdx).toString();
+      CellData key = this.cells.getData(keyCol, rowIdx);
+      // missing past the copied rows of a malformed record, which is then decoded again
+      String k = key == null ? null : key.toString();
       ExcelRecord entry = visitObject(valCol, rowIdx, mapSchemas, headerInfo);
       subList.add(entry.recordGeometry);
       rowIdx += entry.recordGeometry.rowSpan;
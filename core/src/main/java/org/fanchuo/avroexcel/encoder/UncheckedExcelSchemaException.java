@@ -0,0 +1,13 @@
+package org.fanchuo.avroexcel.encoder;
+
+// thrown where the checked exception cannot be, e.g. from a stream pipeline
+public class UncheckedExcelSchemaException extends RuntimeException {
+  public UncheckedExcelSchemaException(ExcelSchemaException cause) {
+    super(cause.getMessage(), cause);
+  }
+
+  @Override
+  public ExcelSchemaException getCause() {
+    return (ExcelSchemaException) super.getCause();
+  }
+}
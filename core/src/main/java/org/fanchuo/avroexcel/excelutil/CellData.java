@@ -0,0 +1,109 @@
+package org.fanchuo.avroexcel.excelutil;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.DateUtil;
+
+// what the decoding reads from a cell, copied from the POI cell while the workbook lock is held so
+// that any thread can decode it afterwards
+public class CellData {
+  // formula cells have the type of their cached result, only a blank cell is BLANK
+  public final CellType cellType;
+  public final String stringValue;
+  public final double numericValue;
+  public final boolean booleanValue;
+  public final ExcelSheetReader.CellClass cellClass;
+  public final short dataFormat;
+  public final boolean date1904;
+  // Cell.toString when it is not the string or the number itself: formulas, dates, booleans
+  private final String text;
+
+  private CellData(
+      CellType cellType,
+      String stringValue,
+      double numericValue,
+      boolean booleanValue,
+      ExcelSheetReader.CellClass cellClass,
+      short dataFormat,
+      boolean date1904,
+      String text) {
+    this.cellType = cellType;
+    this.stringValue = stringValue;
+    this.numericValue = numericValue;
+    this.booleanValue = booleanValue;
+    this.cellClass = cellClass;
+    this.dataFormat = dataFormat;
+    this.date1904 = date1904;
+    this.text = text;
+  }
+
+  // without a sheet reader the values are read from the cell by POI, nothing is cached
+  public static CellData of(Cell cell, ExcelSheetReader excelSheetReader) {
+    CellType rawType = cell.getCellType();
+    CellType cellType = ExcelSheetReader.cellType(cell);
+    CellStyle style = cell.getCellStyle();
+    ExcelSheetReader.CellClass cellClass =
+        excelSheetReader == null
+            ? ExcelSheetReader.classify(style)
+            : excelSheetReader.cellClass(cell);
+    boolean date1904 =
+        excelSheetReader == null
+            ? ExcelSheetReader.isDate1904(cell.getSheet().getWorkbook())
+            : excelSheetReader.isDate1904();
+    String stringValue = null;
+    double numericValue = 0;
+    boolean booleanValue = false;
+    if (cellType == CellType.STRING) {
+      stringValue =
+          excelSheetReader == null
+              ? cell.getStringCellValue()
+              : excelSheetReader.getStringValue(cell);
+    } else if (cellType == CellType.NUMERIC) {
+      numericValue = cell.getNumericCellValue();
+    } else if (cellType == CellType.BOOLEAN) {
+      booleanValue = cell.getBooleanCellValue();
+    }
+    boolean plain =
+        rawType == CellType.STRING
+            || rawType == CellType.BLANK
+            || (rawType == CellType.NUMERIC && !isDate(cellClass, numericValue));
+    String text = plain ? null : cell.toString();
+    return new CellData(
+        cellType,
+        stringValue,
+        numericValue,
+        booleanValue,
+        cellClass,
+        style == null ? 0 : style.getDataFormat(),
+        date1904,
+        text);
+  }
+
+  private static boolean isDate(ExcelSheetReader.CellClass cellClass, double numericValue) {
+    return cellClass == ExcelSheetReader.CellClass.DATE && DateUtil.isValidExcelDate(numericValue);
+  }
+
+  public boolean isBlank() {
+    return this.cellType == CellType.BLANK;
+  }
+
+  // same answer as DateUtil.isCellDateFormatted
+  public boolean isDateFormatted() {
+    return this.cellType == CellType.NUMERIC && isDate(this.cellClass, this.numericValue);
+  }
+
+  // same text as Cell.toString
+  @Override
+  public String toString() {
+    if (this.text != null) return this.text;
+    switch (this.cellType) {
+      case STRING:
+        return this.stringValue;
+      case NUMERIC:
+        return Double.toString(this.numericValue);
+      default:
+        return "";
+    }
+  }
+}
@@ -0,0 +1,12 @@
+package org.fanchuo.avroexcel.excelutil;
+
+import org.apache.poi.ss.util.CellRangeAddress;
+
+// the cells read by the record decoding and the span scan: the sheet itself, read under the
+// workbook lock, or SheetRows, a copy of some of its rows read without it
+public interface CellGrid {
+  // null when the cell does not exist
+  CellData getData(int col, int row);
+
+  CellRangeAddress getRangeAt(int col, int row);
+}
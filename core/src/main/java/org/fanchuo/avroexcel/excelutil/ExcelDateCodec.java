@@ -0,0 +1,100 @@
+package org.fanchuo.avroexcel.excelutil;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+
+// converts between Excel serial dates and epoch based values with plain arithmetic,
+// with the same results as DateUtil which goes through Calendar objects
+public class ExcelDateCodec {
+  private static final long MILLIS_PER_DAY = 86_400_000L;
+  private static final double NANOS_PER_DAY = 86_400_000_000_000.0;
+  // serial of 1970-01-01, 1900 counts a 29th of February that did not exist (serial 60)
+  private static final long EPOCH_1900 = 25569;
+  private static final long EPOCH_1904 = 24107;
+  private static final long FIRST_DAY_1900 = -25567;
+  private static final long FIRST_DAY_AFTER_LEAP_BUG = -25508;
+  private static final double BAD_DATE = -1;
+
+  private ExcelDateCodec() {}
+
+  public static double fromEpochDay(long epochDay, boolean date1904) {
+    if (date1904) return epochDay < -EPOCH_1904 ? BAD_DATE : epochDay + EPOCH_1904;
+    if (epochDay < FIRST_DAY_1900) return BAD_DATE;
+    return epochDay + (epochDay < FIRST_DAY_AFTER_LEAP_BUG ? EPOCH_1900 - 1 : EPOCH_1900);
+  }
+
+  public static double fromEpochDay(long epochDay, long nanoOfDay, boolean date1904) {
+    double serial = fromEpochDay(epochDay, date1904);
+    return serial < 0 ? BAD_DATE : serial + nanoOfDay / NANOS_PER_DAY;
+  }
+
+  public static double fromEpochMillis(long epochMillis, boolean date1904) {
+    long epochDay = Math.floorDiv(epochMillis, MILLIS_PER_DAY);
+    long nanoOfDay = Math.floorMod(epochMillis, MILLIS_PER_DAY) * 1_000_000L;
+    return fromEpochDay(epochDay, nanoOfDay, date1904);
+  }
+
+  public static double fromEpochMicros(long epochMicros, boolean date1904) {
+    long epochDay = Math.floorDiv(epochMicros, MILLIS_PER_DAY * 1_000L);
+    long nanoOfDay = Math.floorMod(epochMicros, MILLIS_PER_DAY * 1_000L) * 1_000L;
+    return fromEpochDay(epochDay, nanoOfDay, date1904);
+  }
+
+  public static double fromEpochNanos(long epochNanos, boolean date1904) {
+    long epochDay = Math.floorDiv(epochNanos, MILLIS_PER_DAY * 1_000_000L);
+    long nanoOfDay = Math.floorMod(epochNanos, MILLIS_PER_DAY * 1_000_000L);
+    return fromEpochDay(epochDay, nanoOfDay, date1904);
+  }
+
+  public static double fromLocalDate(LocalDate date, boolean date1904) {
+    return fromEpochDay(date.toEpochDay(), date1904);
+  }
+
+  public static double fromLocalDateTime(LocalDateTime dateTime, boolean date1904) {
+    return fromEpochDay(
+        dateTime.toLocalDate().toEpochDay(), dateTime.toLocalTime().toNanoOfDay(), date1904);
+  }
+
+  // the time of day is rounded to the millisecond, as DateUtil does
+  public static long toEpochMillis(double serial, boolean date1904) {
+    long wholeDays = (long) Math.floor(serial);
+    long millisOfDay = (long) ((serial - wholeDays) * MILLIS_PER_DAY + 0.5);
+    return toEpochDay(wholeDays, date1904) * MILLIS_PER_DAY + millisOfDay;
+  }
+
+  private static long toEpochDay(long wholeDays, boolean date1904) {
+    if (date1904) return wholeDays - EPOCH_1904;
+    return wholeDays - (wholeDays < 61 ? EPOCH_1900 - 1 : EPOCH_1900);
+  }
+
+  public static long toEpochDay(double serial, boolean date1904) {
+    return Math.floorDiv(toEpochMillis(serial, date1904), MILLIS_PER_DAY);
+  }
+
+  public static long toEpochMicros(double serial, boolean date1904) {
+    return toEpochMillis(serial, date1904) * 1_000L;
+  }
+
+  public static long toEpochNanos(double serial, boolean date1904) {
+    return Math.multiplyExact(toEpochMillis(serial, date1904), 1_000_000L);
+  }
+
+  public static LocalDate toLocalDate(double serial, boolean date1904) {
+    return LocalDate.ofEpochDay(toEpochDay(serial, date1904));
+  }
+
+  public static LocalTime toLocalTime(double serial) {
+    long millisOfDay = Math.floorMod(toEpochMillis(serial, false), MILLIS_PER_DAY);
+    return LocalTime.ofNanoOfDay(millisOfDay * 1_000_000L);
+  }
+
+  public static LocalDateTime toLocalDateTime(double serial, boolean date1904) {
+    long epochMillis = toEpochMillis(serial, date1904);
+    return LocalDateTime.ofEpochSecond(
+        Math.floorDiv(epochMillis, 1_000L),
+        (int) Math.floorMod(epochMillis, 1_000L) * 1_000_000,
+        ZoneOffset.UTC);
+  }
+}
@@ -3,18 +3,47 @@ package org.fanchuo.avroexcel.excelutil;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.function.Predicate;
 import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Date1904Support;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.usermodel.FormulaEvaluator;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.usermodel.XSSFCell;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTCell;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.STCellType;
+
+public class ExcelSheetReader implements CellGrid {
+  private static final int MAX_SHARED_STRINGS = 1 << 16;
+
+  public enum CellClass {
+    DATE,
+    NUMERIC,
+    TEXT
+  }
 
-public class ExcelSheetReader {
   private final Sheet sheet;
   private final Map<Point, CellRangeAddress> idxRange = new HashMap<>();
+  // indexed by style, filled on first use: a workbook holds a few hundred styles at most
+  private final CellClass[] styleClasses;
+  private final boolean date1904;
+  // indexed like the shared strings table, so repeated values are materialized once
+  private final String[] sharedStrings;
+  // read on first use, under the workbook lock
+  private boolean metadataRead;
+  private SheetMetadata metadata;
+  private IllegalStateException metadataError;
+  private final Object workbookLock;
 
   private static class Point {
     final int col;
@@ -40,15 +69,135 @@ public class ExcelSheetReader {
 
   public ExcelSheetReader(Sheet sheet) {
     this.sheet = sheet;
+    this.workbookLock = sheet.getWorkbook();
+    this.styleClasses = new CellClass[sheet.getWorkbook().getNumCellStyles()];
+    this.date1904 = isDate1904(sheet.getWorkbook());
+    int sharedStringCount =
+        sheet.getWorkbook() instanceof XSSFWorkbook
+            ? ((XSSFWorkbook) sheet.getWorkbook()).getSharedStringSource().getUniqueCount()
+            : 0;
+    this.sharedStrings = new String[Math.min(sharedStringCount, MAX_SHARED_STRINGS)];
     makeIdxRange(this.sheet.getMergedRegions());
   }
 
+  // formula cells are read through the result cached in the file, unless they were re-evaluated
+  public static CellType cellType(Cell cell) {
+    CellType cellType = cell.getCellType();
+    return cellType == CellType.FORMULA ? cell.getCachedFormulaResultType() : cellType;
+  }
+
+  // same value as getStringCellValue, one String instance per shared string index. The index is
+  // still parsed from the cell on each read, what the cache saves is the rich text POI builds from
+  // the shared strings table and the String copied out of it. Strings rather than Utf8 keep the
+  // types of the records, so the Avro writer still encodes every value
+  public String getStringValue(Cell cell) {
+    if (cell instanceof XSSFCell) {
+      CTCell ctCell = ((XSSFCell) cell).getCTCell();
+      if (ctCell.getT() == STCellType.S && ctCell.isSetV()) {
+        int idx = Integer.parseInt(ctCell.getV());
+        if (idx >= 0 && idx < this.sharedStrings.length) {
+          String value = this.sharedStrings[idx];
+          if (value == null) {
+            value = cell.getStringCellValue();
+            this.sharedStrings[idx] = value;
+          }
+          return value;
+        }
+      }
+    }
+    return cell.getStringCellValue();
+  }
+
+  // POI objects are not thread safe and the sheets of a workbook share its styles and strings:
+  // threads reading the same workbook hold this lock while they read cells
+  public Object getWorkbookLock() {
+    return this.workbookLock;
+  }
+
+  // null unless the sheet was exported by AvroToExcelConverter, throws IllegalStateException when
+  // its metadata cannot be read
+  public SheetMetadata getMetadata() {
+    synchronized (this.workbookLock) {
+      if (!this.metadataRead) {
+        try {
+          this.metadata = SheetMetadata.read(this.sheet.getWorkbook(), this.sheet.getSheetName());
+        } catch (IllegalStateException e) {
+          this.metadataError = e;
+        }
+        this.metadataRead = true;
+      }
+      if (this.metadataError != null) throw this.metadataError;
+      return this.metadata;
+    }
+  }
+
+  // same as getMetadata, but metadata that cannot be read is ignored
+  public SheetMetadata findMetadata() {
+    synchronized (this.workbookLock) {
+      try {
+        return getMetadata();
+      } catch (IllegalStateException e) {
+        return null;
+      }
+    }
+  }
+
+  public boolean isDate1904() {
+    return this.date1904;
+  }
+
+  static boolean isDate1904(Workbook workbook) {
+    return workbook instanceof Date1904Support && ((Date1904Support) workbook).isDate1904();
+  }
+
+  // same answer as DateUtil.isCellDateFormatted, with the format check done once per style
+  public boolean isDateFormatted(Cell cell) {
+    return cellClass(cell) == CellClass.DATE
+        && DateUtil.isValidExcelDate(cell.getNumericCellValue());
+  }
+
+  public CellClass cellClass(Cell cell) {
+    CellStyle style = cell.getCellStyle();
+    if (style == null) return CellClass.NUMERIC;
+    int idx = style.getIndex() & 0xffff;
+    if (idx >= this.styleClasses.length) return classify(style);
+    CellClass cellClass = this.styleClasses[idx];
+    if (cellClass == null) {
+      cellClass = classify(style);
+      this.styleClasses[idx] = cellClass;
+    }
+    return cellClass;
+  }
+
+  static CellClass classify(CellStyle style) {
+    if (style == null) return CellClass.NUMERIC;
+    String format = style.getDataFormatString();
+    if (DateUtil.isADateFormat(style.getDataFormat(), format)) return CellClass.DATE;
+    if ("@".equals(format)) return CellClass.TEXT;
+    return CellClass.NUMERIC;
+  }
+
   public Cell getCell(int col, int row) {
     Row r = this.sheet.getRow(row);
     if (r == null) return null;
     return r.getCell(col);
   }
 
+  Row getRow(int row) {
+    return this.sheet.getRow(row);
+  }
+
+  @Override
+  public CellData getData(int col, int row) {
+    Cell cell = getCell(col, row);
+    return cell == null ? null : CellData.of(cell, this);
+  }
+
+  public int getLastRowNum() {
+    return this.sheet.getLastRowNum();
+  }
+
+  @Override
   public CellRangeAddress getRangeAt(int col, int row) {
     return this.idxRange.get(new Point(col, row));
   }
@@ -61,11 +210,46 @@ public class ExcelSheetReader {
   }
 
   public static ExcelSheetReader loadSheet(InputStream is, String sheetName) throws IOException {
+    return loadSheet(is, sheetName, false);
+  }
+
+  public static ExcelSheetReader loadSheet(
+      InputStream is, String sheetName, boolean evaluateFormulas) throws IOException {
     try (XSSFWorkbook workbook = new XSSFWorkbook(is)) {
       final Sheet sheet;
       if (sheetName == null) sheet = workbook.getSheetAt(workbook.getActiveSheetIndex());
       else sheet = workbook.getSheet(sheetName);
+      if (evaluateFormulas) evaluateFormulas(sheet, workbook);
       return new ExcelSheetReader(sheet);
     }
   }
+
+  // refreshes the cached results, much slower than reading the values saved with the file
+  private static void evaluateFormulas(Sheet sheet, XSSFWorkbook workbook) {
+    FormulaEvaluator formulaEvaluator = workbook.getCreationHelper().createFormulaEvaluator();
+    for (Row r : sheet) {
+      for (Cell cell : r) {
+        if (cell.getCellType() == CellType.FORMULA) formulaEvaluator.evaluateFormulaCell(cell);
+      }
+    }
+  }
+
+  public static Map<String, ExcelSheetReader> loadSheets(
+      InputStream is, Predicate<String> sheetFilter) throws IOException {
+    return loadSheets(is, sheetFilter, false);
+  }
+
+  public static Map<String, ExcelSheetReader> loadSheets(
+      InputStream is, Predicate<String> sheetFilter, boolean evaluateFormulas) throws IOException {
+    try (XSSFWorkbook workbook = new XSSFWorkbook(is)) {
+      Map<String, ExcelSheetReader> sheets = new LinkedHashMap<>();
+      for (Sheet sheet : workbook) {
+        String sheetName = sheet.getSheetName();
+        if (SheetMetadata.isMetadataSheet(sheetName) || !sheetFilter.test(sheetName)) continue;
+        if (evaluateFormulas) evaluateFormulas(sheet, workbook);
+        sheets.put(sheetName, new ExcelSheetReader(sheet));
+      }
+      return sheets;
+    }
+  }
 }
@@ -0,0 +1,45 @@
+package org.fanchuo.avroexcel.excelutil;
+
+import java.util.Arrays;
+
+// first row of every n-th record, a reader starts from the closest entry instead of the first row
+public class RecordIndex {
+  private long[] records = new long[16];
+  private int[] rows = new int[16];
+  private int size;
+
+  // entries are added in increasing record order
+  public void add(long record, int row) {
+    if (this.size == this.records.length) {
+      this.records = Arrays.copyOf(this.records, this.size * 2);
+      this.rows = Arrays.copyOf(this.rows, this.size * 2);
+    }
+    this.records[this.size] = record;
+    this.rows[this.size] = row;
+    this.size++;
+  }
+
+  public int size() {
+    return this.size;
+  }
+
+  public long getRecord(int i) {
+    return this.records[i];
+  }
+
+  public int getRow(int i) {
+    return this.rows[i];
+  }
+
+  // position of the last entry at or before this record, -1 if there is none
+  public int floorRecord(long record) {
+    int i = Arrays.binarySearch(this.records, 0, this.size, record);
+    return i >= 0 ? i : -i - 2;
+  }
+
+  // position of the last entry starting at or before this row, -1 if there is none
+  public int floorRow(int row) {
+    int i = Arrays.binarySearch(this.rows, 0, this.size, row);
+    return i >= 0 ? i : -i - 2;
+  }
+}
@@ -0,0 +1,149 @@
+package org.fanchuo.avroexcel.excelutil;
+
+import java.util.List;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaParseException;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.SheetVisibility;
+import org.apache.poi.ss.usermodel.Workbook;
+
+// schema and origin of an exported sheet, saved in a hidden sheet so the import needs neither
+public class SheetMetadata {
+  public static final String SHEET_NAME = "_avroexcel";
+  public static final String INDEX_SHEET_NAME = "_avroexcel_index";
+  // a cell holds at most 32767 characters, longer schemas continue on the next cells
+  private static final int CHUNK_SIZE = 32000;
+  private static final String[] HEADERS = {"sheet", "col", "row", "schema"};
+  private static final String[] INDEX_HEADERS = {"sheet", "record", "row"};
+  private static final int SCHEMA_COL = 3;
+
+  public final String sheetName;
+  public final int col;
+  public final int row;
+  public final Schema schema;
+  // null when the export did not index the records
+  public final RecordIndex recordIndex;
+
+  public SheetMetadata(String sheetName, int col, int row, Schema schema, RecordIndex recordIndex) {
+    this.sheetName = sheetName;
+    this.col = col;
+    this.row = row;
+    this.schema = schema;
+    this.recordIndex = recordIndex;
+  }
+
+  public static boolean isMetadataSheet(String sheetName) {
+    return SHEET_NAME.equals(sheetName) || INDEX_SHEET_NAME.equals(sheetName);
+  }
+
+  private static Sheet createHiddenSheet(Workbook workbook, String sheetName, String[] headers) {
+    Sheet sheet = workbook.createSheet(sheetName);
+    workbook.setSheetVisibility(workbook.getSheetIndex(sheet), SheetVisibility.VERY_HIDDEN);
+    Row header = sheet.createRow(0);
+    for (int i = 0; i < headers.length; i++) {
+      header.createCell(i).setCellValue(headers[i]);
+    }
+    return sheet;
+  }
+
+  public static void write(Workbook workbook, List<SheetMetadata> sheets) {
+    Sheet sheet = createHiddenSheet(workbook, SHEET_NAME, HEADERS);
+    int r = 1;
+    for (SheetMetadata metadata : sheets) {
+      Row line = sheet.createRow(r++);
+      line.createCell(0).setCellValue(metadata.sheetName);
+      line.createCell(1).setCellValue(metadata.col);
+      line.createCell(2).setCellValue(metadata.row);
+      String json = metadata.schema.toString();
+      int c = SCHEMA_COL;
+      for (int start = 0; start < json.length(); start += CHUNK_SIZE) {
+        String chunk = json.substring(start, Math.min(json.length(), start + CHUNK_SIZE));
+        line.createCell(c++).setCellValue(chunk);
+      }
+    }
+    Sheet indexSheet = null;
+    r = 1;
+    for (SheetMetadata metadata : sheets) {
+      if (metadata.recordIndex == null) continue;
+      if (indexSheet == null) {
+        indexSheet = createHiddenSheet(workbook, INDEX_SHEET_NAME, INDEX_HEADERS);
+      }
+      for (int i = 0; i < metadata.recordIndex.size(); i++) {
+        Row line = indexSheet.createRow(r++);
+        line.createCell(0).setCellValue(metadata.sheetName);
+        line.createCell(1).setCellValue(metadata.recordIndex.getRecord(i));
+        line.createCell(2).setCellValue(metadata.recordIndex.getRow(i));
+      }
+    }
+  }
+
+  // null when the workbook holds no metadata for this sheet, e.g. it was not made by this library.
+  // Throws IllegalStateException when the metadata of the sheet cannot be read
+  public static SheetMetadata read(Workbook workbook, String sheetName) {
+    Sheet sheet = workbook.getSheet(SHEET_NAME);
+    if (sheet == null) return null;
+    for (Row line : sheet) {
+      if (!describes(line, sheetName)) continue;
+      StringBuilder json = new StringBuilder();
+      for (int c = SCHEMA_COL; c < line.getLastCellNum(); c++) {
+        Cell chunk = line.getCell(c);
+        if (chunk != null) json.append(text(chunk));
+      }
+      Schema schema;
+      try {
+        schema = new Schema.Parser().parse(json.toString());
+      } catch (SchemaParseException e) {
+        throw malformed(line, "invalid schema, " + e.getMessage());
+      }
+      return new SheetMetadata(
+          sheetName,
+          (int) number(line, 1),
+          (int) number(line, 2),
+          schema,
+          readIndex(workbook, sheetName));
+    }
+    return null;
+  }
+
+  private static RecordIndex readIndex(Workbook workbook, String sheetName) {
+    Sheet sheet = workbook.getSheet(INDEX_SHEET_NAME);
+    if (sheet == null) return null;
+    RecordIndex recordIndex = new RecordIndex();
+    for (Row line : sheet) {
+      if (!describes(line, sheetName)) continue;
+      recordIndex.add((long) number(line, 1), (int) number(line, 2));
+    }
+    return recordIndex.size() == 0 ? null : recordIndex;
+  }
+
+  private static double number(Row line, int col) {
+    Cell cell = line.getCell(col);
+    if (cell == null || cell.getCellType() != CellType.NUMERIC)
+      throw malformed(line, "no number in column " + (col + 1));
+    return cell.getNumericCellValue();
+  }
+
+  private static String text(Cell cell) {
+    if (cell.getCellType() != CellType.STRING)
+      throw malformed(cell.getRow(), "no text in column " + (cell.getColumnIndex() + 1));
+    return cell.getStringCellValue();
+  }
+
+  private static IllegalStateException malformed(Row line, String reason) {
+    return new IllegalStateException(
+        String.format(
+            "Malformed metadata in sheet %s, row %d: %s",
+            line.getSheet().getSheetName(), line.getRowNum() + 1, reason));
+  }
+
+  private static boolean describes(Row line, String sheetName) {
+    Cell name = line.getCell(0);
+    return line.getRowNum() > 0
+        && name != null
+        && name.getCellType() == CellType.STRING
+        && sheetName.equals(name.getStringCellValue());
+  }
+}
@@ -0,0 +1,75 @@
+package org.fanchuo.avroexcel.excelutil;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.util.CellRangeAddress;
+
+// a copy of consecutive rows from firstRow, in the columns of the mask starting at col. Until
+// detach the rows are copied from the sheet when first read and the caller holds the workbook
+// lock, afterwards any thread reads the copy and a read outside of it makes it incomplete
+public class SheetRows implements CellGrid {
+  private final ExcelSheetReader sheet;
+  private final int col;
+  private final boolean[] columns;
+  private final int firstRow;
+  private final List<CellData[]> rows = new ArrayList<>();
+  private boolean detached;
+  private boolean complete = true;
+
+  public SheetRows(ExcelSheetReader sheet, int col, boolean[] columns, int firstRow) {
+    this.sheet = sheet;
+    this.col = col;
+    this.columns = columns;
+    this.firstRow = firstRow;
+  }
+
+  @Override
+  public CellData getData(int col, int row) {
+    int c = col - this.col;
+    int r = row - this.firstRow;
+    if (c < 0 || c >= this.columns.length || !this.columns[c] || r < 0) {
+      if (!this.detached) return this.sheet.getData(col, row);
+      this.complete = false;
+      return null;
+    }
+    if (r >= this.rows.size()) {
+      if (this.detached) {
+        this.complete = false;
+        return null;
+      }
+      copyTo(row + 1);
+    }
+    return this.rows.get(r)[c];
+  }
+
+  @Override
+  public CellRangeAddress getRangeAt(int col, int row) {
+    return this.sheet.getRangeAt(col, row);
+  }
+
+  // copies the rows before endRow that were not read yet
+  public void copyTo(int endRow) {
+    for (int row = this.firstRow + this.rows.size(); row < endRow; row++) {
+      Row r = this.sheet.getRow(row);
+      CellData[] cells = new CellData[this.columns.length];
+      for (int c = 0; r != null && c < cells.length; c++) {
+        if (!this.columns[c]) continue;
+        Cell cell = r.getCell(this.col + c);
+        if (cell != null) cells[c] = CellData.of(cell, this.sheet);
+      }
+      this.rows.add(cells);
+    }
+  }
+
+  // the sheet is no longer read, the workbook lock can be released
+  public void detach() {
+    this.detached = true;
+  }
+
+  // false when a cell outside of the copy was read after detach
+  public boolean isComplete() {
+    return this.complete;
+  }
+}
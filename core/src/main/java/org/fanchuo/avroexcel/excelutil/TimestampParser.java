@@ -2,15 +2,107 @@ package org.fanchuo.avroexcel.excelutil;
 
 import java.text.ParsePosition;
 import java.time.Instant;
+import java.time.Month;
+import java.time.Year;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.TemporalAccessor;
 import org.apache.poi.ss.usermodel.Cell;
 
 public class TimestampParser {
+  private static final long INVALID = Long.MIN_VALUE;
+  private static final long UNSUPPORTED = Long.MIN_VALUE + 1;
+  private static final int OFFSET_POS = 19;
+
   private TimestampParser() {}
 
   public static Instant parseDate(Cell cell) {
-    String str = cell.getStringCellValue();
+    return parse(cell.getStringCellValue());
+  }
+
+  public static Instant parse(String str) {
+    long epochSecond = epochSecond(str);
+    if (epochSecond == INVALID) return null;
+    if (epochSecond == UNSUPPORTED) return parseWithFormatter(str);
+    return Instant.ofEpochSecond(epochSecond, nanoOfSecond(str));
+  }
+
+  // yyyy-MM-ddTHH:mm:ss[.fraction]Z is scanned by hand and most text is rejected on its first
+  // characters, signed years, offsets other than Z, 24:00 and leap seconds go to the formatter.
+  // T and Z may be lowercase, as ISO_INSTANT parses case insensitively
+  private static long epochSecond(String str) {
+    if (str.length() < OFFSET_POS + 1) return INVALID;
+    char first = str.charAt(0);
+    if (first == '+' || first == '-') return UNSUPPORTED;
+    int year = digits(str, 0, 4);
+    if (year < 0) return INVALID;
+    if (str.charAt(4) != '-') return isDigit(str.charAt(4)) ? UNSUPPORTED : INVALID;
+    if (str.charAt(7) != '-'
+        || (str.charAt(10) != 'T' && str.charAt(10) != 't')
+        || str.charAt(13) != ':'
+        || str.charAt(16) != ':') {
+      return INVALID;
+    }
+    int month = digits(str, 5, 7);
+    int day = digits(str, 8, 10);
+    int hour = digits(str, 11, 13);
+    int minute = digits(str, 14, 16);
+    int second = digits(str, 17, 19);
+    if (month < 1 || month > 12 || day < 1 || hour < 0 || minute < 0 || minute > 59 || second < 0)
+      return INVALID;
+    if (day > Month.of(month).length(Year.isLeap(year))) return INVALID;
+    if (hour > 23 || second > 59) return hour == 24 || second == 60 ? UNSUPPORTED : INVALID;
+    int pos = OFFSET_POS;
+    if (str.charAt(pos) == '.') {
+      int end = Math.min(str.length(), pos + 10);
+      pos++;
+      while (pos < end && isDigit(str.charAt(pos))) pos++;
+    }
+    if (pos >= str.length()) return INVALID;
+    char offset = str.charAt(pos);
+    if (offset == '+' || offset == '-') return UNSUPPORTED;
+    if (offset != 'Z' && offset != 'z') return INVALID;
+    return epochDay(year, month, day) * 86_400L + hour * 3_600L + minute * 60L + second;
+  }
+
+  private static int nanoOfSecond(String str) {
+    if (str.charAt(OFFSET_POS) != '.') return 0;
+    int nanos = 0;
+    int count = 0;
+    for (int pos = OFFSET_POS + 1; count < 9 && isDigit(str.charAt(pos)); pos++, count++) {
+      nanos = nanos * 10 + (str.charAt(pos) - '0');
+    }
+    for (; count < 9; count++) {
+      nanos *= 10;
+    }
+    return nanos;
+  }
+
+  // value of the digits in [start, end), -1 if one of the characters is not a digit
+  private static int digits(String str, int start, int end) {
+    int value = 0;
+    for (int i = start; i < end; i++) {
+      char c = str.charAt(i);
+      if (!isDigit(c)) return -1;
+      value = value * 10 + (c - '0');
+    }
+    return value;
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  // days from civil: March based years put the leap day at the end of the year
+  private static long epochDay(int year, int month, int day) {
+    int y = month <= 2 ? year - 1 : year;
+    int era = Math.floorDiv(y, 400);
+    int yearOfEra = y - era * 400;
+    int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+    int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+    return era * 146_097L + dayOfEra - 719_468L;
+  }
+
+  private static Instant parseWithFormatter(String str) {
     ParsePosition position = new ParsePosition(0);
     TemporalAccessor temporalAccessor =
         DateTimeFormatter.ISO_INSTANT.parseUnresolved(str, position);
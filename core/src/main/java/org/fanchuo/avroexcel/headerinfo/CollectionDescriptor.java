@@ -1,9 +1,9 @@
 package org.fanchuo.avroexcel.headerinfo;
 
-import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellType;
 import org.apache.poi.ss.util.CellRangeAddress;
-import org.fanchuo.avroexcel.excelutil.ExcelSheetReader;
+import org.fanchuo.avroexcel.excelutil.CellData;
+import org.fanchuo.avroexcel.excelutil.CellGrid;
 
 public class CollectionDescriptor {
   public final int col;
@@ -14,10 +14,18 @@ public class CollectionDescriptor {
     this.headerInfo = headerInfo;
   }
 
-  public static int extractCollectionSize(ExcelSheetReader sheet, int col, int row) {
-    Cell c = sheet.getCell(col, row);
-    if (c != null && c.getCellType() != CellType.BLANK) {
-      CellRangeAddress cellRangeAddress = sheet.getRangeAt(col, row);
+  // the marker of flat layouts: the symbol of the collection followed by the rows it takes, e.g.
+  // *3, a merged marker is only the symbol
+  public static String flatMarker(String symbol, int rowSpan) {
+    return symbol + rowSpan;
+  }
+
+  public static int extractCollectionSize(CellGrid cells, int col, int row) {
+    CellData c = cells.getData(col, row);
+    if (c != null && !c.isBlank()) {
+      int rowSpan = flatRowSpan(c);
+      if (rowSpan > 0) return rowSpan;
+      CellRangeAddress cellRangeAddress = cells.getRangeAt(col, row);
       if (cellRangeAddress == null) {
         return 1;
       }
@@ -25,4 +33,15 @@ public class CollectionDescriptor {
     }
     return -1;
   }
+
+  private static int flatRowSpan(CellData c) {
+    if (c.cellType != CellType.STRING) return -1;
+    String text = c.stringValue;
+    if (text.length() < 2 || text.length() > 10) return -1;
+    if (text.charAt(0) != '*' && text.charAt(0) != '#') return -1;
+    for (int i = 1; i < text.length(); i++) {
+      if (text.charAt(i) < '0' || text.charAt(i) > '9') return -1;
+    }
+    return Integer.parseInt(text.substring(1));
+  }
 }
@@ -0,0 +1,141 @@
+package org.fanchuo.avroexcel.headerinfo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.fanchuo.avroexcel.excelutil.CellData;
+import org.fanchuo.avroexcel.excelutil.CellGrid;
+
+// finds the rows taken by each record without decoding it, so the data can be cut into chunks
+public class RecordSpanScanner {
+  private static final Set<String> ELEMENT_COLUMNS =
+      new HashSet<>(Arrays.asList("*", "#k", "#v", ".value"));
+
+  private RecordSpanScanner() {}
+
+  public static int recordSpan(CellGrid cells, int col, int row, HeaderInfo headerInfo) {
+    return recordSpan(cells, col, row, headerInfo, Collections.emptySet());
+  }
+
+  // skipped: subtrees that are not decoded, only their collection markers are read
+  public static int recordSpan(
+      CellGrid cells, int col, int row, HeaderInfo headerInfo, Set<HeaderInfo> skipped) {
+    if (emptyLine(cells, col, row, headerInfo)) return -1;
+    return span(cells, col, row, headerInfo, skipped);
+  }
+
+  // rows taken by the value under headerInfo at this position
+  public static int span(CellGrid cells, int col, int row, HeaderInfo headerInfo) {
+    return span(cells, col, row, headerInfo, Collections.emptySet());
+  }
+
+  private static int span(
+      CellGrid cells, int col, int row, HeaderInfo headerInfo, Set<HeaderInfo> skipped) {
+    List<HeaderInfo> subHeaders = headerInfo.subHeaders;
+    if (subHeaders == null || subHeaders.isEmpty()) return 1;
+    int colPos = col;
+    int arraySize = -1;
+    CollectionDescriptor arrayCol = null;
+    int mapSize = -1;
+    CollectionDescriptor mapCol = null;
+    int result = 1;
+    for (HeaderInfo subHeader : subHeaders) {
+      String colName = subHeader.text;
+      if (".value".equals(colName)) {
+        if (!isBlank(cells.getData(colPos, row))) return 1;
+      } else if ("*size".equals(colName)) {
+        arraySize = CollectionDescriptor.extractCollectionSize(cells, colPos, row);
+      } else if ("*".equals(colName)) {
+        arrayCol = new CollectionDescriptor(colPos, subHeader);
+      } else if ("#size".equals(colName)) {
+        mapSize = CollectionDescriptor.extractCollectionSize(cells, colPos, row);
+      } else if ("#v".equals(colName)) {
+        mapCol = new CollectionDescriptor(colPos, subHeader);
+      } else if (skipped.contains(subHeader)) {
+        result = Math.max(result, markerSpan(cells, colPos, row, subHeader));
+      } else if (!"#k".equals(colName)) {
+        result = Math.max(result, span(cells, colPos, row, subHeader, skipped));
+      }
+      colPos += subHeader.colSpan;
+    }
+    if (arraySize > 0 && arrayCol != null) {
+      result = Math.max(result, collectionSpan(cells, row, arraySize, arrayCol, skipped));
+    } else if (mapSize > 0 && mapCol != null) {
+      result = Math.max(result, collectionSpan(cells, row, mapSize, mapCol, skipped));
+    }
+    return result;
+  }
+
+  // the rows of a collection are those of its marker, so the cells of the elements are not read
+  public static int markerSpan(CellGrid cells, int col, int row, HeaderInfo headerInfo) {
+    List<HeaderInfo> subHeaders = headerInfo.subHeaders;
+    if (subHeaders == null) return 1;
+    int colPos = col;
+    int result = 1;
+    for (HeaderInfo subHeader : subHeaders) {
+      String colName = subHeader.text;
+      if ("*size".equals(colName) || "#size".equals(colName)) {
+        int size = CollectionDescriptor.extractCollectionSize(cells, colPos, row);
+        result = Math.max(result, size);
+      } else if (!ELEMENT_COLUMNS.contains(colName)) {
+        result = Math.max(result, markerSpan(cells, colPos, row, subHeader));
+      }
+      colPos += subHeader.colSpan;
+    }
+    return result;
+  }
+
+  // columns of the collection markers written on the first row of a record, the other rows of a
+  // record leave them blank
+  public static List<Integer> markerColumns(int col, HeaderInfo headerInfo) {
+    List<Integer> columns = new ArrayList<>();
+    addMarkerColumns(col, headerInfo, columns);
+    return columns;
+  }
+
+  private static void addMarkerColumns(int col, HeaderInfo headerInfo, List<Integer> columns) {
+    if (headerInfo.subHeaders == null) return;
+    int colPos = col;
+    for (HeaderInfo subHeader : headerInfo.subHeaders) {
+      String colName = subHeader.text;
+      if ("*size".equals(colName) || "#size".equals(colName)) {
+        columns.add(colPos);
+      } else if (!ELEMENT_COLUMNS.contains(colName)) {
+        addMarkerColumns(colPos, subHeader, columns);
+      }
+      colPos += subHeader.colSpan;
+    }
+  }
+
+  public static boolean hasMarker(CellGrid cells, List<Integer> columns, int row) {
+    for (int col : columns) {
+      if (!isBlank(cells.getData(col, row))) return true;
+    }
+    return false;
+  }
+
+  private static int collectionSpan(
+      CellGrid cells, int row, int size, CollectionDescriptor collection, Set<HeaderInfo> skipped) {
+    int rowPos = row;
+    while (size > 0) {
+      int subResult = span(cells, collection.col, rowPos, collection.headerInfo, skipped);
+      rowPos += subResult;
+      size -= subResult;
+    }
+    return rowPos - row;
+  }
+
+  private static boolean isBlank(CellData cell) {
+    return cell == null || cell.isBlank();
+  }
+
+  public static boolean emptyLine(CellGrid cells, int col, int row, HeaderInfo headerInfo) {
+    for (int i = col; i < col + headerInfo.colSpan; i++) {
+      if (!isBlank(cells.getData(i, row))) return false;
+    }
+    return true;
+  }
+}
@@ -4,10 +4,10 @@ import java.time.Instant;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import org.apache.poi.ss.usermodel.Cell;
-import org.apache.poi.ss.usermodel.DateUtil;
+import java.util.Objects;
 import org.apache.poi.ss.util.CellAddress;
-import org.fanchuo.avroexcel.excelutil.ExcelSheetReader;
+import org.fanchuo.avroexcel.excelutil.CellData;
+import org.fanchuo.avroexcel.excelutil.CellGrid;
 import org.fanchuo.avroexcel.excelutil.TimestampParser;
 import org.fanchuo.avroexcel.headerinfo.CollectionDescriptor;
 import org.fanchuo.avroexcel.headerinfo.HeaderInfo;
@@ -25,11 +25,35 @@ public class DataVisitor {
     return "record" + (counter++);
   }
 
-  int visitSheet(ExcelSheetReader excelSheetReader, int col, int row, HeaderInfo headerInfo)
+  // source is the same header tree as target, or one read from a workbook with the same layout
+  void merge(DataVisitor other, HeaderInfo target, HeaderInfo source) throws InferSchemaException {
+    List<HeaderInfo> targetSubs = target.subHeaders;
+    List<HeaderInfo> sourceSubs = source.subHeaders;
+    if (!Objects.equals(target.text, source.text)
+        || target.colSpan != source.colSpan
+        || (targetSubs == null) != (sourceSubs == null)
+        || (targetSubs != null && targetSubs.size() != sourceSubs.size()))
+      throw new InferSchemaException(
+          String.format("Header '%s' does not match header '%s'", source.text, target.text));
+    boolean[] types = other.schemas.get(source);
+    if (types != null) {
+      boolean[] merged = this.schemas.computeIfAbsent(target, DataVisitor::make);
+      for (int i = 0; i < types.length; i++) {
+        merged[i] |= types[i];
+      }
+    }
+    if (targetSubs != null) {
+      for (int i = 0; i < targetSubs.size(); i++) {
+        merge(other, targetSubs.get(i), sourceSubs.get(i));
+      }
+    }
+  }
+
+  int visitSheet(CellGrid cells, int col, int row, HeaderInfo headerInfo)
       throws InferSchemaException {
     List<HeaderInfo> subHeaders = headerInfo.subHeaders;
     if (subHeaders == null || subHeaders.isEmpty()) {
-      Type type = visitScalar(excelSheetReader, col, row);
+      Type type = visitScalar(cells, col, row);
       this.schemas.computeIfAbsent(headerInfo, DataVisitor::make)[type.ordinal()] = true;
       return 1;
     }
@@ -42,21 +66,21 @@ public class DataVisitor {
     for (HeaderInfo subHeader : subHeaders) {
       String colName = subHeader.text;
       if (".value".equals(colName)) {
-        Type type = visitScalar(excelSheetReader, colPos, row);
+        Type type = visitScalar(cells, colPos, row);
         if (type != Type.NULL) {
           this.schemas.computeIfAbsent(headerInfo, DataVisitor::make)[type.ordinal()] = true;
           return 1;
         }
       } else if ("*size".equals(colName)) {
-        arraySize = CollectionDescriptor.extractCollectionSize(excelSheetReader, colPos, row);
+        arraySize = CollectionDescriptor.extractCollectionSize(cells, colPos, row);
       } else if ("*".equals(colName)) {
         arrayCol = new CollectionDescriptor(colPos, subHeader);
       } else if ("#size".equals(colName)) {
-        mapSize = CollectionDescriptor.extractCollectionSize(excelSheetReader, colPos, row);
+        mapSize = CollectionDescriptor.extractCollectionSize(cells, colPos, row);
       } else if ("#v".equals(colName)) {
         mapCol = new CollectionDescriptor(colPos, subHeader);
       } else if (!"#k".equals(colName)) {
-        int subResult = visitSheet(excelSheetReader, colPos, row, subHeader);
+        int subResult = visitSheet(cells, colPos, row, subHeader);
         result = Math.max(result, subResult);
       }
       colPos += subHeader.colSpan;
@@ -64,8 +88,7 @@ public class DataVisitor {
     if (arraySize > 0 && arrayCol != null) {
       int rowPos = row;
       while (arraySize > 0) {
-        int subResult =
-            this.visitSheet(excelSheetReader, arrayCol.col, rowPos, arrayCol.headerInfo);
+        int subResult = this.visitSheet(cells, arrayCol.col, rowPos, arrayCol.headerInfo);
         rowPos += subResult;
         arraySize -= subResult;
       }
@@ -73,7 +96,7 @@ public class DataVisitor {
     } else if (mapSize > 0 && mapCol != null) {
       int rowPos = row;
       while (mapSize > 0) {
-        int subResult = this.visitSheet(excelSheetReader, mapCol.col, rowPos, mapCol.headerInfo);
+        int subResult = this.visitSheet(cells, mapCol.col, rowPos, mapCol.headerInfo);
         rowPos += subResult;
         mapSize -= subResult;
       }
@@ -82,29 +105,27 @@ public class DataVisitor {
     return result;
   }
 
-  private static Type visitScalar(ExcelSheetReader excelSheetReader, int col, int row)
-      throws InferSchemaException {
-    Cell cell = excelSheetReader.getCell(col, row);
+  private static Type visitScalar(CellGrid cells, int col, int row) throws InferSchemaException {
+    CellData cell = cells.getData(col, row);
     if (cell == null) return Type.NULL;
-    switch (cell.getCellType()) {
+    switch (cell.cellType) {
       case BOOLEAN:
-      case FORMULA:
         return Type.BOOL;
       case BLANK:
         return Type.NULL;
       case STRING:
-        Instant instant = TimestampParser.parseDate(cell);
+        Instant instant = TimestampParser.parse(cell.stringValue);
         if (instant != null) return Type.TIMESTAMP;
         return Type.STRING;
       case NUMERIC:
-        if (DateUtil.isCellDateFormatted(cell)) return Type.LOCAL_DATE;
+        if (cell.isDateFormatted()) return Type.LOCAL_DATE;
         return Type.DOUBLE;
       default:
         CellAddress address = new CellAddress(row, col);
         throw new InferSchemaException(
             String.format(
                 "Cannot encode value '%s' of type '%s' in cell '%s'",
-                cell, cell.getCellStyle(), address));
+                cell, cell.cellType, address));
     }
   }
 }
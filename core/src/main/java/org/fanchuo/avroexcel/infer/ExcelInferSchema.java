@@ -1,30 +1,158 @@
 package org.fanchuo.avroexcel.infer;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.*;
+import java.util.concurrent.Callable;
 import org.apache.avro.Schema;
-import org.apache.poi.ss.usermodel.Cell;
-import org.apache.poi.ss.usermodel.CellType;
 import org.fanchuo.avroexcel.excelutil.ExcelSheetReader;
+import org.fanchuo.avroexcel.excelutil.SheetRows;
 import org.fanchuo.avroexcel.headerinfo.HeaderInfo;
 import org.fanchuo.avroexcel.headerinfo.HeaderInfoExcelReader;
+import org.fanchuo.avroexcel.headerinfo.RecordSpanScanner;
+import org.fanchuo.avroexcel.parallel.TaskOutcome;
+import org.fanchuo.avroexcel.parallel.TaskRunner;
 
 public class ExcelInferSchema {
   private ExcelInferSchema() {}
 
+  private static final int MIN_WORKER_RECORDS = 256;
+  private static final int BATCH_RECORDS = 64;
+
+  // the first row of the next record to copy, workers move it under the workbook lock
+  private static class RecordCursor {
+    int row;
+    boolean done;
+
+    RecordCursor(int row) {
+      this.row = row;
+    }
+  }
+
+  private static class Sample {
+    final HeaderInfo headerInfo;
+    final DataVisitor dataVisitor;
+
+    Sample(HeaderInfo headerInfo, DataVisitor dataVisitor) {
+      this.headerInfo = headerInfo;
+      this.dataVisitor = dataVisitor;
+    }
+  }
+
   public static Schema inferSchema(InputStream inputStream, String sheetName, int col, int row)
       throws IOException, InferSchemaException {
+    return inferSchema(inputStream, sheetName, col, row, 0);
+  }
+
+  public static Schema inferSchema(
+      InputStream inputStream, String sheetName, int col, int row, int threads)
+      throws IOException, InferSchemaException {
     ExcelSheetReader excelSheetReader = ExcelSheetReader.loadSheet(inputStream, sheetName);
+    Sample sample = visitSheet(excelSheetReader, col, row, threads);
+    return makeSchema(sample.headerInfo, sample.dataVisitor);
+  }
+
+  // every workbook must have the same header layout, one workbook is visited per thread
+  public static Schema inferSchema(
+      List<File> excelFiles, String sheetName, int col, int row, int threads)
+      throws IOException, InferSchemaException {
+    if (excelFiles.isEmpty()) throw new IllegalArgumentException("No Excel file to read");
+    List<Callable<Sample>> tasks = new ArrayList<>();
+    for (File excelFile : excelFiles) {
+      tasks.add(
+          () -> {
+            try (InputStream is = new FileInputStream(excelFile)) {
+              return visitSheet(ExcelSheetReader.loadSheet(is, sheetName), col, row, 1);
+            }
+          });
+    }
+    List<TaskOutcome<Sample>> outcomes = TaskRunner.runAll(tasks, threads);
+    Sample first = result(outcomes.get(0), excelFiles.get(0));
+    for (int i = 1; i < outcomes.size(); i++) {
+      Sample sample = result(outcomes.get(i), excelFiles.get(i));
+      try {
+        first.dataVisitor.merge(sample.dataVisitor, first.headerInfo, sample.headerInfo);
+      } catch (InferSchemaException e) {
+        throw new InferSchemaException(
+            String.format("%s, %s: %s", excelFiles.get(i), excelFiles.get(0), e.getMessage()));
+      }
+    }
+    return makeSchema(first.headerInfo, first.dataVisitor);
+  }
+
+  private static <T> T result(TaskOutcome<T> outcome, File excelFile)
+      throws IOException, InferSchemaException {
+    if (outcome.error instanceof InferSchemaException)
+      throw new InferSchemaException(
+          String.format("%s: %s", excelFile, outcome.error.getMessage()));
+    return outcome.getOrThrow();
+  }
+
+  private static Sample visitSheet(ExcelSheetReader excelSheetReader, int col, int row, int threads)
+      throws IOException, InferSchemaException {
     HeaderInfo headerInfo = HeaderInfoExcelReader.visitSheet(excelSheetReader, col, row);
-    row += headerInfo.rowSpan;
+    RecordCursor cursor = new RecordCursor(row + headerInfo.rowSpan);
+    boolean[] columns = new boolean[headerInfo.colSpan];
+    Arrays.fill(columns, true);
+    // every record takes at least one row
+    int maxRecords = excelSheetReader.getLastRowNum() + 1 - cursor.row;
+    int workers = TaskRunner.threads(threads, Math.max(1, maxRecords / MIN_WORKER_RECORDS));
+    List<Callable<DataVisitor>> tasks = new ArrayList<>();
+    for (int i = 0; i < workers; i++) {
+      tasks.add(() -> visitRecords(excelSheetReader, col, headerInfo, columns, cursor));
+    }
+    List<TaskOutcome<DataVisitor>> outcomes = TaskRunner.runAll(tasks, workers);
+    DataVisitor dataVisitor = new DataVisitor();
+    for (TaskOutcome<DataVisitor> outcome : outcomes) {
+      if (outcome.error instanceof InferSchemaException) throw (InferSchemaException) outcome.error;
+      dataVisitor.merge(outcome.getOrThrow(), headerInfo, headerInfo);
+    }
+    return new Sample(headerInfo, dataVisitor);
+  }
+
+  // POI cells are not thread safe: the workers take turns to copy the next batch of records under
+  // the workbook lock, and visit their copy without it
+  private static DataVisitor visitRecords(
+      ExcelSheetReader excelSheetReader,
+      int col,
+      HeaderInfo headerInfo,
+      boolean[] columns,
+      RecordCursor cursor)
+      throws InferSchemaException {
     DataVisitor dataVisitor = new DataVisitor();
-    while (!emptyLine(excelSheetReader, col, row, headerInfo)) {
-      int rowSpan = dataVisitor.visitSheet(excelSheetReader, col, row, headerInfo);
-      if (rowSpan <= 0) break;
-      row += rowSpan;
+    List<SheetRows> batch = new ArrayList<>();
+    int[] batchRows = new int[BATCH_RECORDS];
+    while (true) {
+      batch.clear();
+      synchronized (excelSheetReader.getWorkbookLock()) {
+        while (batch.size() < BATCH_RECORDS && !cursor.done) {
+          SheetRows rows = new SheetRows(excelSheetReader, col, columns, cursor.row);
+          int rowSpan = RecordSpanScanner.recordSpan(rows, col, cursor.row, headerInfo);
+          if (rowSpan <= 0) {
+            cursor.done = true;
+            break;
+          }
+          rows.copyTo(cursor.row + rowSpan);
+          rows.detach();
+          batchRows[batch.size()] = cursor.row;
+          batch.add(rows);
+          cursor.row += rowSpan;
+        }
+      }
+      if (batch.isEmpty()) return dataVisitor;
+      for (int i = 0; i < batch.size(); i++) {
+        SheetRows rows = batch.get(i);
+        dataVisitor.visitSheet(rows, col, batchRows[i], headerInfo);
+        if (!rows.isComplete()) {
+          // a malformed record reads cells past the rows of its span, it is visited from the sheet
+          synchronized (excelSheetReader.getWorkbookLock()) {
+            dataVisitor.visitSheet(excelSheetReader, col, batchRows[i], headerInfo);
+          }
+        }
+      }
     }
-    return makeSchema(headerInfo, dataVisitor);
   }
 
   private static final Type[] TYPES = Type.values();
@@ -64,15 +192,4 @@ public class ExcelInferSchema {
     }
     return union.get(0);
   }
-
-  private static boolean emptyLine(
-      ExcelSheetReader excelSheetReader, int col, int row, HeaderInfo headerInfo) {
-    for (int i = col; i < col + headerInfo.colSpan; i++) {
-      Cell cell = excelSheetReader.getCell(i, row);
-      if (cell != null && cell.getCellType() != CellType.BLANK) {
-        return false;
-      }
-    }
-    return true;
-  }
 }
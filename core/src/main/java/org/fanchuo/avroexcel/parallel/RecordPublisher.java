@@ -0,0 +1,127 @@
+package org.fanchuo.avroexcel.parallel;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// reads one record per unit of demand, so nothing is decoded ahead of the subscriber
+public class RecordPublisher<T> implements Flow.Publisher<T> {
+  private static final Logger LOGGER = LoggerFactory.getLogger(RecordPublisher.class);
+
+  public interface Source<T> extends Closeable {
+    // null once there is no record left
+    T read() throws Exception;
+  }
+
+  private final Source<T> source;
+  private final Executor executor;
+  private final AtomicBoolean subscribed = new AtomicBoolean();
+
+  public RecordPublisher(Source<T> source, Executor executor) {
+    this.source = source;
+    this.executor = executor;
+  }
+
+  public RecordPublisher(Source<T> source) {
+    this(source, ForkJoinPool.commonPool());
+  }
+
+  @Override
+  public void subscribe(Flow.Subscriber<? super T> subscriber) {
+    Objects.requireNonNull(subscriber);
+    if (!this.subscribed.compareAndSet(false, true)) {
+      subscriber.onSubscribe(new RecordSubscription(null));
+      subscriber.onError(new IllegalStateException("The records can only be read once"));
+      return;
+    }
+    subscriber.onSubscribe(new RecordSubscription(subscriber));
+  }
+
+  private class RecordSubscription implements Flow.Subscription, Runnable {
+    private final Flow.Subscriber<? super T> subscriber;
+    private final AtomicLong demand = new AtomicLong();
+    private final AtomicInteger pending = new AtomicInteger();
+    private volatile boolean cancelled;
+    private volatile boolean invalidRequest;
+    private boolean done;
+
+    RecordSubscription(Flow.Subscriber<? super T> subscriber) {
+      this.subscriber = subscriber;
+      this.done = subscriber == null;
+    }
+
+    @Override
+    public void request(long n) {
+      if (n <= 0) invalidRequest = true;
+      else demand.accumulateAndGet(n, (a, b) -> a + b < 0 ? Long.MAX_VALUE : a + b);
+      schedule();
+    }
+
+    @Override
+    public void cancel() {
+      cancelled = true;
+      schedule();
+    }
+
+    private void schedule() {
+      if (pending.getAndIncrement() == 0) executor.execute(this);
+    }
+
+    // only one thread at a time gets here, signals that arrive meanwhile loop again
+    @Override
+    public void run() {
+      int missed = 1;
+      do {
+        drain();
+        missed = pending.addAndGet(-missed);
+      } while (missed != 0);
+    }
+
+    private void drain() {
+      while (!done) {
+        if (cancelled) {
+          release();
+          return;
+        }
+        if (invalidRequest) {
+          release();
+          subscriber.onError(new IllegalArgumentException("Requested a non positive count"));
+          return;
+        }
+        if (demand.get() == 0) return;
+        T item;
+        try {
+          item = source.read();
+        } catch (Exception e) {
+          release();
+          subscriber.onError(e);
+          return;
+        }
+        if (item == null) {
+          release();
+          subscriber.onComplete();
+          return;
+        }
+        if (demand.get() != Long.MAX_VALUE) demand.decrementAndGet();
+        subscriber.onNext(item);
+      }
+    }
+
+    private void release() {
+      done = true;
+      try {
+        source.close();
+      } catch (IOException e) {
+        LOGGER.warn("Failed to close the record source", e);
+      }
+    }
+  }
+}
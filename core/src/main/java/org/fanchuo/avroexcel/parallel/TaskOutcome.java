@@ -0,0 +1,41 @@
+package org.fanchuo.avroexcel.parallel;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+public class TaskOutcome<T> {
+  public final T value;
+  public final Exception error;
+
+  TaskOutcome(T value, Exception error) {
+    this.value = value;
+    this.error = error;
+  }
+
+  public boolean isSuccess() {
+    return error == null;
+  }
+
+  public T getOrThrow() throws IOException {
+    if (error == null) return value;
+    if (error instanceof RuntimeException) throw (RuntimeException) error;
+    if (error instanceof IOException) throw (IOException) error;
+    throw new IOException("Task failed", error);
+  }
+
+  public static <T> TaskOutcome<T> await(Future<T> future) {
+    try {
+      return new TaskOutcome<>(future.get(), null);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      future.cancel(true);
+      return new TaskOutcome<>(null, e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof Error) throw (Error) cause;
+      if (cause instanceof Exception) return new TaskOutcome<>(null, (Exception) cause);
+      return new TaskOutcome<>(null, e);
+    }
+  }
+}
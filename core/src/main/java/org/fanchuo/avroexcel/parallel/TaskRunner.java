@@ -0,0 +1,41 @@
+package org.fanchuo.avroexcel.parallel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class TaskRunner {
+  private TaskRunner() {}
+
+  public static int defaultThreads() {
+    return Runtime.getRuntime().availableProcessors();
+  }
+
+  public static int threads(int requested, int tasks) {
+    int threads = requested > 0 ? requested : defaultThreads();
+    return Math.max(1, Math.min(threads, tasks));
+  }
+
+  // a failing task is reported in its outcome and does not cancel the others
+  public static <T> List<TaskOutcome<T>> runAll(List<? extends Callable<T>> tasks, int threads) {
+    if (tasks.isEmpty()) return Collections.emptyList();
+    ExecutorService executor = Executors.newFixedThreadPool(threads(threads, tasks.size()));
+    try {
+      List<Future<T>> futures = new ArrayList<>();
+      for (Callable<T> task : tasks) {
+        futures.add(executor.submit(task));
+      }
+      List<TaskOutcome<T>> outcomes = new ArrayList<>();
+      for (Future<T> future : futures) {
+        outcomes.add(TaskOutcome.await(future));
+      }
+      return outcomes;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
@@ -12,14 +12,31 @@ import org.apache.avro.io.DatumReader;
 
 public class AvroDescriptor {
   public static List<String> convert(File avroFile) throws IOException {
+    List<String> output = new ArrayList<>();
+    for (GenericRecord record : read(avroFile)) {
+      output.add(record.toString());
+    }
+    return output;
+  }
+
+  // the value at fieldPath of every record, "null" when it is missing
+  public static List<String> values(File avroFile, String fieldPath) throws IOException {
+    FieldPath parsed = FieldPath.parse(fieldPath);
+    List<String> output = new ArrayList<>();
+    for (GenericRecord record : read(avroFile)) {
+      output.add(String.valueOf(parsed.get(record)));
+    }
+    return output;
+  }
+
+  private static List<GenericRecord> read(File avroFile) throws IOException {
     GenericData genericData = AvroReader.makeGenericData();
     DatumReader<GenericRecord> datumReader = new GenericDatumReader<>(null, null, genericData);
-    List<String> output = new ArrayList<>();
+    List<GenericRecord> output = new ArrayList<>();
     try (DataFileReader<GenericRecord> dataFileReader =
         new DataFileReader<>(avroFile, datumReader)) {
       while (dataFileReader.hasNext()) {
-        GenericRecord record = dataFileReader.next();
-        output.add(record.toString());
+        output.add(dataFileReader.next());
       }
     }
     return output;
@@ -0,0 +1,65 @@
+package org.fanchuo.avroexcel;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ColumnWidthEstimatorTest {
+  @BeforeEach
+  void setUp() throws IOException {
+    TestOutput.reset();
+  }
+
+  // width of column B, the names, once the sample users are exported
+  private static int nameColumnWidth(ColumnWidthEstimator estimator) throws IOException {
+    File avroFile = SampleUsers.avroFile("users.avro");
+    File excelFile = TestOutput.file("users_widths.xlsx");
+    AvroToExcelConverter.convert(
+        avroFile,
+        excelFile,
+        null,
+        1,
+        2,
+        new ExportOptions().withAutoSizeColumns(false).withColumnWidthEstimator(estimator));
+    try (InputStream is = new FileInputStream(excelFile);
+        XSSFWorkbook workbook = new XSSFWorkbook(is)) {
+      return workbook.getSheet("tab").getColumnWidth(1);
+    }
+  }
+
+  @Test
+  void displayedLength() {
+    assertEquals(3, ColumnWidthEstimator.length(256.0));
+    assertEquals(3, ColumnWidthEstimator.length(0.5));
+    assertEquals(11, ColumnWidthEstimator.length(1.0 / 3));
+    assertEquals(4, ColumnWidthEstimator.length(true));
+    assertEquals(5, ColumnWidthEstimator.length(false));
+    assertEquals(6, ColumnWidthEstimator.length("Alyssa"));
+    assertEquals(3, ColumnWidthEstimator.length("ab\ncde\nf"));
+  }
+
+  @Test
+  void boundedWidth() {
+    ColumnWidthEstimator estimator = new ColumnWidthEstimator();
+    assertEquals(13 * 256, estimator.width(10));
+    assertEquals(4 * 256, estimator.width(0));
+    assertEquals(80 * 256, estimator.width(1000));
+    assertEquals(255 * 256, estimator.withMaxWidth(1000).width(1000));
+  }
+
+  @Test
+  void exportedWidths() throws Exception {
+    ColumnWidthEstimator estimator =
+        new ColumnWidthEstimator().withCharWidth(1).withPadding(0).withMinWidth(1);
+    // "Charlie" is the longest name
+    assertEquals(7 * 256, nameColumnWidth(estimator));
+    // only the header and "Alyssa" are measured
+    assertEquals(6 * 256, nameColumnWidth(estimator.withSampleSize(2)));
+  }
+}
@@ -0,0 +1,107 @@
+package org.fanchuo.avroexcel;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.apache.avro.Schema;
+import org.fanchuo.avroexcel.infer.ExcelInferSchema;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+// runs the parallel paths on one shared workbook several times and compares with a serial run
+class ConcurrentAccessTest {
+  private static final int THREADS = 8;
+  private static final int ROUNDS = 5;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    TestOutput.reset();
+  }
+
+  private static List<String> sheetNames(int count) {
+    List<String> sheetNames = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      sheetNames.add("sheet" + i);
+    }
+    return sheetNames;
+  }
+
+  @Test
+  void convertSheets() throws Exception {
+    Schema schema = SampleUsers.schema();
+    File excelFile = TestOutput.file("sheets.xlsx");
+    SampleUsers.workbook(excelFile, sheetNames(THREADS), 50);
+    File serialFile = TestOutput.file("serial.avro");
+    ExcelToAvroConverter.convert(excelFile, serialFile, "sheet0", 1, 2, schema);
+    List<String> expected = AvroDescriptor.convert(serialFile);
+    assertEquals(150, expected.size());
+
+    for (int round = 0; round < ROUNDS; round++) {
+      String output = TestOutput.DIR.resolve("round" + round + "_{sheet}.avro").toString();
+      List<SheetConversionResult> results =
+          ExcelToAvroConverter.convertSheets(
+              excelFile,
+              Collections.singletonList(SheetMapping.forPattern("sheet.*", schema, output)),
+              1,
+              2,
+              THREADS);
+      assertEquals(THREADS, results.size());
+      for (SheetConversionResult result : results) {
+        assertTrue(result.isSuccess(), String.valueOf(result.error));
+        assertEquals(expected, AvroDescriptor.convert(result.outputFile), result.sheetName);
+      }
+    }
+  }
+
+  @Test
+  void inferSchemaWorkers() throws Exception {
+    File excelFile = TestOutput.file("infer.xlsx");
+    // 900 records on 2700 rows, enough for 8 workers
+    SampleUsers.workbook(excelFile, sheetNames(1), 300);
+    Schema expected;
+    try (InputStream is = new FileInputStream(excelFile)) {
+      expected = ExcelInferSchema.inferSchema(is, "sheet0", 1, 2, 1);
+    }
+    for (int round = 0; round < ROUNDS; round++) {
+      try (InputStream is = new FileInputStream(excelFile)) {
+        assertEquals(expected, ExcelInferSchema.inferSchema(is, "sheet0", 1, 2, THREADS));
+      }
+    }
+  }
+
+  @Test
+  void streamParallel() throws Exception {
+    Schema schema = SampleUsers.schema();
+    File mergedFile = TestOutput.file("stream_merged.xlsx");
+    SampleUsers.workbook(mergedFile, Collections.singletonList("tab"), 300);
+    File avroFile = TestOutput.file("stream.avro");
+    ExcelToAvroConverter.convert(mergedFile, avroFile, "tab", 1, 2, schema);
+    File flatFile = TestOutput.file("stream_flat.xlsx");
+    AvroToExcelConverter.convert(
+        avroFile, flatFile, "tab", 1, 2, new ExportOptions().withLayout(ExportOptions.Layout.FLAT));
+
+    for (File excelFile : Arrays.asList(mergedFile, flatFile)) {
+      List<String> expected =
+          ExcelToAvroConverter.stream(excelFile, "tab", 1, 2, schema)
+              .map(String::valueOf)
+              .collect(Collectors.toList());
+      assertEquals(900, expected.size());
+      for (int round = 0; round < ROUNDS; round++) {
+        List<String> parallel =
+            ExcelToAvroConverter.stream(excelFile, "tab", 1, 2, schema)
+                .parallel()
+                .map(String::valueOf)
+                .collect(Collectors.toList());
+        assertEquals(expected, parallel, excelFile.getName());
+      }
+    }
+  }
+}
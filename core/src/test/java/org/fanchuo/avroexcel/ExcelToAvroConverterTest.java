@@ -0,0 +1,148 @@
+package org.fanchuo.avroexcel;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.apache.avro.Schema;
+import org.fanchuo.avroexcel.encoder.ExcelSchemaException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ExcelToAvroConverterTest {
+  @BeforeEach
+  void setUp() throws IOException {
+    TestOutput.reset();
+  }
+
+  // the records of every workbook read, in the order of the inputs
+  @Test
+  void convertMany() throws Exception {
+    Schema schema = SampleUsers.schema();
+    File avroFile = SampleUsers.avroFile("users.avro");
+    File filteredFile = TestOutput.file("users_filtered.xlsx");
+    AvroToExcelConverter.convert(
+        avroFile, filteredFile, null, 1, 2, new ExportOptions().withFilter("favorite.color!=red"));
+    File excelFile = TestOutput.file("users.xlsx");
+    AvroToExcelConverter.convert(avroFile, excelFile, null, 1, 2);
+    File missingFile = TestOutput.file("missing.xlsx");
+    File mergedFile = TestOutput.file("users_many.avro");
+
+    List<FileConversionResult> results =
+        ExcelToAvroConverter.convertMany(
+            List.of(filteredFile, missingFile, excelFile), mergedFile, "tab", 1, 2, schema, 2);
+
+    assertEquals(3, results.size());
+    assertEquals(filteredFile, results.get(0).inputFile);
+    assertEquals(2, results.get(0).recordCount);
+    assertEquals(missingFile, results.get(1).inputFile);
+    assertFalse(results.get(1).isSuccess());
+    assertInstanceOf(FileNotFoundException.class, results.get(1).error);
+    assertEquals(3, results.get(2).recordCount);
+    assertTrue(results.get(2).isSuccess());
+    assertEquals(
+        List.of("Alyssa", "Charlie", "Alyssa", "Ben", "Charlie"),
+        AvroDescriptor.values(mergedFile, "name"));
+    assertEquals(
+        List.of("null", "blue", "null", "red", "blue"),
+        AvroDescriptor.values(mergedFile, "favorite.color"));
+  }
+
+  // each sheet is decoded as a single sheet conversion would, the failing one is reported
+  @Test
+  void convertSheets() throws Exception {
+    File excelFile = TestOutput.file("tests.xlsx");
+    try (InputStream is = getClass().getResourceAsStream("/tests.xlsx")) {
+      assertNotNull(is);
+      Files.copy(is, excelFile.toPath());
+    }
+    Schema enumA = Schema.createEnum("enumA", null, null, Arrays.asList("c", "d"));
+    Schema nullableString =
+        Schema.createUnion(Schema.create(Schema.Type.STRING), Schema.create(Schema.Type.NULL));
+    Schema test3 =
+        Schema.createRecord(
+            "test",
+            null,
+            null,
+            false,
+            Arrays.asList(
+                new Schema.Field("a", enumA),
+                new Schema.Field("b", nullableString),
+                new Schema.Field("c", nullableString)));
+    Schema test1 =
+        Schema.createRecord(
+            "test",
+            null,
+            null,
+            false,
+            Collections.singletonList(
+                new Schema.Field("field_txt", Schema.create(Schema.Type.STRING))));
+    String output = TestOutput.DIR.resolve("sheet_{sheet}.avro").toString();
+    File singleFile = TestOutput.file("single_Test3.avro");
+    ExcelToAvroConverter.convert(excelFile, singleFile, "Test3", 0, 0, test3);
+
+    List<SheetConversionResult> results =
+        ExcelToAvroConverter.convertSheets(
+            excelFile,
+            Arrays.asList(
+                SheetMapping.forPattern("Test3", test3, output),
+                SheetMapping.forPattern("Test1", test1, output)),
+            0,
+            0,
+            2);
+
+    assertEquals(2, results.size());
+    for (SheetConversionResult result : results) {
+      if ("Test3".equals(result.sheetName)) {
+        assertTrue(result.isSuccess());
+        assertEquals(TestOutput.file("sheet_Test3.avro"), result.outputFile);
+        List<String> records = AvroDescriptor.convert(result.outputFile);
+        assertFalse(records.isEmpty());
+        assertEquals(records.size(), result.recordCount);
+        assertEquals(AvroDescriptor.convert(singleFile), records);
+      } else {
+        assertEquals("Test1", result.sheetName);
+        assertFalse(result.isSuccess());
+        assertInstanceOf(ExcelSchemaException.class, result.error);
+      }
+    }
+  }
+
+  // only the matching sheets are converted, in the order of the workbook
+  @Test
+  void convertMatchingSheets() throws Exception {
+    File excelFile = TestOutput.file("sheets.xlsx");
+    SampleUsers.workbook(excelFile, Arrays.asList("first", "ignored", "second"), 1);
+    String output = TestOutput.DIR.resolve("users_{sheet}.avro").toString();
+
+    List<SheetConversionResult> results =
+        ExcelToAvroConverter.convertSheets(
+            excelFile,
+            Collections.singletonList(
+                SheetMapping.forPattern("first|second", SampleUsers.schema(), output)),
+            1,
+            2,
+            2);
+
+    assertEquals(2, results.size());
+    assertEquals("first", results.get(0).sheetName);
+    assertEquals("second", results.get(1).sheetName);
+    for (SheetConversionResult result : results) {
+      assertTrue(result.isSuccess());
+      assertEquals(TestOutput.file("users_" + result.sheetName + ".avro"), result.outputFile);
+      assertEquals(3, result.recordCount);
+      assertEquals(
+          List.of("Alyssa", "Ben", "Charlie"), AvroDescriptor.values(result.outputFile, "name"));
+      assertEquals(
+          List.of("null", "red", "blue"),
+          AvroDescriptor.values(result.outputFile, "favorite.color"));
+    }
+    assertFalse(TestOutput.file("users_ignored.avro").exists());
+  }
+}
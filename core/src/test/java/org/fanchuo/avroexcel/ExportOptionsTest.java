@@ -0,0 +1,60 @@
+package org.fanchuo.avroexcel;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import org.apache.avro.Schema;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.FillPatternType;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ExportOptionsTest {
+  @BeforeEach
+  void setUp() throws IOException {
+    TestOutput.reset();
+  }
+
+  // the names read back from a preview of the sample users
+  private static List<String> preview(long maxRecords, int maxRows) throws Exception {
+    Schema schema = SampleUsers.schema();
+    File avroFile = SampleUsers.avroFile("users.avro");
+    File excelFile = TestOutput.file("users_preview.xlsx");
+    File backAvroFile = TestOutput.file("back_users_preview.avro");
+    AvroToExcelConverter.convert(
+        avroFile, excelFile, null, 1, 2, ExportOptions.preview(maxRecords, maxRows));
+    ExcelToAvroConverter.convert(excelFile, backAvroFile, "tab", 1, 2, schema);
+    return AvroDescriptor.values(backAvroFile, "name");
+  }
+
+  @Test
+  void previewRecords() throws Exception {
+    assertEquals(List.of("Alyssa", "Ben"), preview(2, 0));
+    File excelFile = TestOutput.file("users_preview.xlsx");
+    List<String> dump = ExcelWorkbookDescriptor.dump(excelFile, "tab");
+    assertTrue(dump.contains("Cell: B12 = Ben"));
+    assertFalse(dump.stream().anyMatch(line -> line.startsWith("Cell: B16 ")));
+    try (InputStream is = new FileInputStream(excelFile);
+        XSSFWorkbook workbook = new XSSFWorkbook(is)) {
+      // the first record starts on row 8, its cells are not banded
+      Cell cell = workbook.getSheet("tab").getRow(7).getCell(1);
+      assertEquals(FillPatternType.NO_FILL, cell.getCellStyle().getFillPattern());
+    }
+  }
+
+  // the record that reaches the row limit is written whole
+  @Test
+  void previewRows() throws Exception {
+    // Alyssa takes 4 rows, then Ben 4 more
+    assertEquals(List.of("Alyssa"), preview(0, 2));
+    assertEquals(List.of("Alyssa"), preview(0, 4));
+    assertEquals(List.of("Alyssa", "Ben"), preview(0, 5));
+    // the first limit reached ends the preview
+    assertEquals(List.of("Alyssa"), preview(1, 5));
+  }
+}
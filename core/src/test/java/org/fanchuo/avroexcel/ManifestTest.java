@@ -0,0 +1,180 @@
+package org.fanchuo.avroexcel;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.avro.Schema;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ManifestTest {
+  @BeforeEach
+  void setUp() throws IOException {
+    TestOutput.reset();
+  }
+
+  // one block per record so that every part of the split gets a share of the file
+  private static File blockPerRecord(String name, int copies) throws IOException {
+    Schema schema = SampleUsers.schema();
+    List<GenericRecord> records = SampleUsers.records();
+    File file = TestOutput.file(name);
+    try (DataFileWriter<GenericRecord> dataFileWriter =
+        new DataFileWriter<>(new GenericDatumWriter<>(schema, AvroReader.makeGenericData()))) {
+      dataFileWriter.create(schema, file);
+      for (int i = 0; i < copies; i++) {
+        for (GenericRecord record : records) {
+          dataFileWriter.append(record);
+          dataFileWriter.sync();
+        }
+      }
+    }
+    return file;
+  }
+
+  @Test
+  void firstRecordFollowsCounts() throws IOException {
+    Manifest manifest = new Manifest(Manifest.Unit.BYTE);
+    manifest.add("part-00000.xlsx", 4, 0, 100);
+    manifest.add("part-00002.xlsx", 3, 200, 300);
+    File manifestFile = TestOutput.file(Manifest.FILE_NAME);
+    manifest.write(manifestFile);
+
+    assertEquals(7, manifest.getRecordCount());
+    assertEquals(0, manifest.getEntries().get(0).firstRecord);
+    assertEquals(4, manifest.getEntries().get(1).firstRecord);
+    List<String> lines = Files.readAllLines(manifestFile.toPath(), StandardCharsets.UTF_8);
+    assertEquals(
+        List.of(
+            "file\tfirstRecord\trecordCount\tstartByte\tendByte",
+            "part-00000.xlsx\t0\t4\t0\t100",
+            "part-00002.xlsx\t4\t3\t200\t300"),
+        lines);
+  }
+
+  @Test
+  void emptyManifest() throws IOException {
+    Manifest manifest = new Manifest(Manifest.Unit.BYTE);
+    File manifestFile = TestOutput.file(Manifest.FILE_NAME);
+    manifest.write(manifestFile);
+
+    assertEquals(0, manifest.getRecordCount());
+    assertTrue(manifest.getEntries().isEmpty());
+    assertEquals(1, Files.readAllLines(manifestFile.toPath(), StandardCharsets.UTF_8).size());
+  }
+
+  @Test
+  void splitOffsetsCoverTheFile() throws Exception {
+    File avroFile = blockPerRecord("blocks.avro", 20);
+    File outputDir = TestOutput.file("blocks_split");
+
+    Manifest manifest = AvroToExcelConverter.convertSplit(avroFile, outputDir, null, 4, 1, 2, 2);
+
+    assertEquals(60, manifest.getRecordCount());
+    assertEquals(4, manifest.getEntries().size());
+    long expectedStart = 0;
+    long firstRecord = 0;
+    List<String> lines = new ArrayList<>();
+    for (Manifest.Entry entry : manifest.getEntries()) {
+      // the ranges are contiguous, each part starts where the previous one ends
+      assertEquals(expectedStart, entry.startOffset, entry.file);
+      assertTrue(entry.startOffset < entry.endOffset, entry.file);
+      assertEquals(firstRecord, entry.firstRecord, entry.file);
+      expectedStart = entry.endOffset;
+      firstRecord += entry.recordCount;
+      lines.add(entry.toString());
+    }
+    assertEquals(avroFile.length(), expectedStart);
+    List<String> written =
+        Files.readAllLines(
+            new File(outputDir, Manifest.FILE_NAME).toPath(), StandardCharsets.UTF_8);
+    assertEquals(lines, written.subList(1, written.size()));
+  }
+
+  // read back in the order of the manifest, the parts give the records of the file
+  @Test
+  void splitPartsHoldTheRecords() throws Exception {
+    File avroFile = blockPerRecord("blocks.avro", 20);
+    File outputDir = TestOutput.file("blocks_split");
+
+    Manifest manifest = AvroToExcelConverter.convertSplit(avroFile, outputDir, null, 4, 1, 2, 2);
+
+    List<String> names = List.of("Alyssa", "Ben", "Charlie");
+    List<String> expected = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      expected.addAll(names);
+    }
+    List<String> back = new ArrayList<>();
+    for (Manifest.Entry entry : manifest.getEntries()) {
+      File excelFile = new File(outputDir, entry.file);
+      // every part starts with its own headers, the first record on row 8
+      String first = names.get((int) (entry.firstRecord % names.size()));
+      List<String> dump = ExcelWorkbookDescriptor.dump(excelFile, "tab");
+      assertTrue(dump.contains("Cell: B3 = name"), entry.file);
+      assertTrue(dump.contains("Cell: B8 = " + first), entry.file);
+      File backAvroFile = TestOutput.file("back_" + entry.file + ".avro");
+      ExcelToAvroConverter.convert(excelFile, backAvroFile, "tab", 1, 2, SampleUsers.schema());
+      List<String> part = AvroDescriptor.values(backAvroFile, "name");
+      assertEquals(entry.recordCount, part.size(), entry.file);
+      back.addAll(part);
+    }
+    assertEquals(expected, back);
+  }
+
+  @Test
+  void emptyPartsAreLeftOut() throws Exception {
+    // the three sample users fit in a single block, only one part finds its sync marker
+    File avroFile = SampleUsers.avroFile("users.avro");
+    File outputDir = TestOutput.file("users_split");
+
+    Manifest manifest = AvroToExcelConverter.convertSplit(avroFile, outputDir, null, 4, 1, 2, 2);
+
+    assertEquals(1, manifest.getEntries().size());
+    Manifest.Entry entry = manifest.getEntries().get(0);
+    assertEquals(3, entry.recordCount);
+    assertEquals(0, entry.firstRecord);
+    assertTrue(new File(outputDir, entry.file).exists());
+    for (int i = 0; i < 4; i++) {
+      String part = String.format("part-%05d.xlsx", i);
+      assertEquals(part.equals(entry.file), new File(outputDir, part).exists(), part);
+    }
+  }
+
+  @Test
+  void rollingRowsCoverTheRecords() throws Exception {
+    File excelFile = TestOutput.file("users.xlsx");
+    SampleUsers.workbook(excelFile, List.of("tab"), 1);
+    File outputDir = TestOutput.file("users_parts");
+
+    ImportResult result =
+        ExcelToAvroConverter.convertRolling(
+            excelFile, outputDir, "tab", 1, 2, SampleUsers.schema(), 0, 2);
+
+    Manifest manifest = result.manifest;
+    assertEquals(Manifest.Unit.ROW, manifest.getUnit());
+    assertEquals(3, result.recordCount);
+    assertEquals(2, manifest.getEntries().size());
+    // the records start on row 8: Alyssa and Ben take 4 rows each, then Charlie takes 1
+    List<String> lines =
+        Files.readAllLines(
+            new File(outputDir, Manifest.FILE_NAME).toPath(), StandardCharsets.UTF_8);
+    assertEquals(
+        List.of(
+            "file\tfirstRecord\trecordCount\tstartRow\tendRow",
+            "part-00000.avro\t0\t2\t7\t15",
+            "part-00001.avro\t2\t1\t15\t16"),
+        lines);
+    assertEquals(
+        List.of("Alyssa", "Ben"),
+        AvroDescriptor.values(new File(outputDir, "part-00000.avro"), "name"));
+    assertEquals(
+        List.of("Charlie"), AvroDescriptor.values(new File(outputDir, "part-00001.avro"), "name"));
+  }
+}
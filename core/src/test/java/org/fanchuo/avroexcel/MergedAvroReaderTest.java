@@ -0,0 +1,46 @@
+package org.fanchuo.avroexcel;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import org.apache.avro.Schema;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class MergedAvroReaderTest {
+  @BeforeEach
+  void setUp() throws IOException {
+    TestOutput.reset();
+  }
+
+  @Test
+  void filesFollowEachOther() throws Exception {
+    Schema schema = SampleUsers.schema();
+    SampleUsers.write(TestOutput.file("users_1.avro"), schema);
+    SampleUsers.write(TestOutput.file("users_2.avro"), schema);
+    List<File> avroFiles = InputFiles.glob(TestOutput.DIR.resolve("users_*.avro").toString());
+    File excelFile = TestOutput.file("users_merged.xlsx");
+
+    long records = AvroToExcelConverter.convertMerged(avroFiles, null, excelFile, null, 1, 2, 2);
+
+    assertEquals(2, avroFiles.size());
+    assertEquals(6, records);
+    // one header for both files, the 9 rows of the first file are followed by the second one
+    List<String> dump = ExcelWorkbookDescriptor.dump(excelFile, "tab");
+    assertEquals(1, dump.stream().filter(line -> line.endsWith(" = name")).count());
+    assertTrue(dump.contains("Cell: B8 = Alyssa"));
+    assertTrue(dump.contains("Cell: B16 = Charlie"));
+    assertTrue(dump.contains("Cell: B17 = Alyssa"));
+    assertTrue(dump.contains("Cell: B25 = Charlie"));
+    File backAvroFile = TestOutput.file("back_merged.avro");
+    ExcelToAvroConverter.convert(excelFile, backAvroFile, "tab", 1, 2, schema);
+    assertEquals(
+        List.of("Alyssa", "Ben", "Charlie", "Alyssa", "Ben", "Charlie"),
+        AvroDescriptor.values(backAvroFile, "name"));
+    assertEquals(
+        List.of("256", "7", "null", "256", "7", "null"),
+        AvroDescriptor.values(backAvroFile, "favorite.number"));
+  }
+}
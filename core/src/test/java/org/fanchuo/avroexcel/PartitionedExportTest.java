@@ -0,0 +1,153 @@
+package org.fanchuo.avroexcel;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class PartitionedExportTest {
+  private static final int COPIES = 500;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    TestOutput.reset();
+  }
+
+  @Test
+  void concurrentSheets() throws Exception {
+    Schema schema = SampleUsers.schema();
+    List<GenericRecord> records = SampleUsers.records();
+    File serialFile = TestOutput.file("serial.xlsx");
+    AvroToExcelConverter.convert(SampleUsers.avroFile("users.avro"), serialFile, null, 1, 2);
+    File serialBack = TestOutput.file("serial.avro");
+    ExcelToAvroConverter.convert(serialFile, serialBack, "tab", 1, 2, schema);
+    List<String> expected = AvroDescriptor.convert(serialBack);
+
+    for (int round = 0; round < 3; round++) {
+      File excelFile = TestOutput.file("partitioned" + round + ".xlsx");
+      try (WorkbookWriter workbookWriter = new WorkbookWriter(excelFile)) {
+        PartitionedExport partitionedExport =
+            new PartitionedExport(workbookWriter, schema, 1, 2, FieldPath.parse("name"), 8);
+        try {
+          for (int i = 0; i < COPIES; i++) {
+            records.forEach(partitionedExport);
+          }
+          partitionedExport.finish();
+        } finally {
+          partitionedExport.abort();
+        }
+        assertEquals(3, partitionedExport.getSheetCount());
+      }
+      for (int i = 0; i < records.size(); i++) {
+        String name = records.get(i).get("name").toString();
+        File backAvroFile = TestOutput.file("back_" + round + "_" + name + ".avro");
+        ExcelToAvroConverter.convert(excelFile, backAvroFile, name, 1, 2, schema);
+        List<String> lines = AvroDescriptor.convert(backAvroFile);
+        assertEquals(COPIES, lines.size(), name);
+        for (String line : lines) {
+          assertEquals(expected.get(i), line, name);
+        }
+      }
+    }
+  }
+
+  // Alyssa has no color, Ben's red starts the second sheet and Charlie's blue is one too many
+  @Test
+  void sheetPerValue() throws Exception {
+    Schema schema = SampleUsers.schema();
+    File avroFile = SampleUsers.avroFile("users.avro");
+    File excelFile = TestOutput.file("users_by_color.xlsx");
+
+    int sheets =
+        AvroToExcelConverter.convertPartitioned(avroFile, excelFile, "favorite.color", 2, 1, 2);
+
+    assertEquals(3, sheets);
+    List<String> sheetNames = new ArrayList<>();
+    try (InputStream is = new FileInputStream(excelFile);
+        XSSFWorkbook workbook = new XSSFWorkbook(is)) {
+      for (int i = 0; i < sheets; i++) {
+        sheetNames.add(workbook.getSheetName(i));
+      }
+    }
+    assertEquals(List.of(PartitionedExport.MISSING_SHEET, "red", "_other"), sheetNames);
+    List<String> names = List.of("Alyssa", "Ben", "Charlie");
+    List<String> colors = List.of("null", "red", "blue");
+    for (int i = 0; i < sheets; i++) {
+      String sheetName = sheetNames.get(i);
+      List<String> dump = ExcelWorkbookDescriptor.dump(excelFile, sheetName);
+      assertTrue(dump.contains("Cell: B8 = " + names.get(i)), sheetName);
+      File backAvroFile = TestOutput.file("back_" + sheetName + ".avro");
+      ExcelToAvroConverter.convert(excelFile, backAvroFile, sheetName, 1, 2, schema);
+      assertEquals(List.of(names.get(i)), AvroDescriptor.values(backAvroFile, "name"));
+      assertEquals(
+          List.of(colors.get(i)), AvroDescriptor.values(backAvroFile, "favorite.color"));
+    }
+  }
+
+  @Test
+  void missingValueIsNotTheStringNull() throws Exception {
+    Schema schema = SampleUsers.schema();
+    GenericRecord missing = SampleUsers.records().get(0);
+    assertNull(FieldPath.parse("favorite.color").get(missing));
+    GenericRecord nullString = new GenericData.Record((GenericData.Record) missing, true);
+    ((GenericRecord) nullString.get("favorite")).put("color", "null");
+    File excelFile = TestOutput.file("missing.xlsx");
+    try (WorkbookWriter workbookWriter = new WorkbookWriter(excelFile)) {
+      PartitionedExport partitionedExport =
+          new PartitionedExport(workbookWriter, schema, 1, 2, FieldPath.parse("favorite.color"), 8);
+      try {
+        partitionedExport.accept(missing);
+        partitionedExport.accept(nullString);
+        partitionedExport.accept(missing);
+        partitionedExport.finish();
+      } finally {
+        partitionedExport.abort();
+      }
+      assertEquals(2, partitionedExport.getSheetCount());
+    }
+    File backAvroFile = TestOutput.file("back.avro");
+    ExcelToAvroConverter.convert(
+        excelFile, backAvroFile, PartitionedExport.MISSING_SHEET, 1, 2, schema);
+    assertEquals(2, AvroDescriptor.convert(backAvroFile).size());
+    ExcelToAvroConverter.convert(excelFile, backAvroFile, "null", 1, 2, schema);
+    assertEquals(1, AvroDescriptor.convert(backAvroFile).size());
+  }
+
+  @Test
+  void writerFailureStopsTheReader() throws Exception {
+    Schema schema = SampleUsers.schema();
+    GenericRecord tooLong =
+        new GenericData.Record((GenericData.Record) SampleUsers.records().get(0), true);
+    // a cell holds at most 32767 characters
+    tooLong.put("name", "x".repeat(40000));
+    int total = 100_000;
+    int[] accepted = {0};
+    try (WorkbookWriter workbookWriter = new WorkbookWriter(TestOutput.file("failed.xlsx"))) {
+      PartitionedExport partitionedExport =
+          new PartitionedExport(workbookWriter, schema, 1, 2, FieldPath.parse("favorite.color"), 2);
+      try {
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> {
+              for (int i = 0; i < total; i++) {
+                partitionedExport.accept(tooLong);
+                accepted[0]++;
+              }
+            });
+      } finally {
+        partitionedExport.abort();
+      }
+    }
+    assertTrue(accepted[0] < total, accepted[0] + " records routed after the failure");
+  }
+}
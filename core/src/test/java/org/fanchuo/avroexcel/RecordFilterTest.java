@@ -0,0 +1,149 @@
+package org.fanchuo.avroexcel;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class RecordFilterTest {
+  @BeforeEach
+  void setUp() throws IOException {
+    TestOutput.reset();
+  }
+
+  private static List<String> names(RecordFilter recordFilter) throws IOException {
+    List<String> names = new ArrayList<>();
+    for (GenericRecord record : SampleUsers.records()) {
+      if (recordFilter.test(record)) names.add(record.get("name").toString());
+    }
+    return names;
+  }
+
+  private static RecordFilter filter(String... expressions) {
+    List<RecordFilter.Condition> conditions = new ArrayList<>();
+    for (String expression : expressions) {
+      conditions.add(RecordFilter.Condition.parse(expression));
+    }
+    return new RecordFilter(conditions, 1.0, null);
+  }
+
+  @Test
+  void syntaxErrors() {
+    for (String expression : Arrays.asList("", "color", "=red", "!=red", "!red")) {
+      assertThrows(
+          IllegalArgumentException.class,
+          () -> RecordFilter.Condition.parse(expression),
+          expression);
+    }
+  }
+
+  @Test
+  void operator() {
+    RecordFilter.Condition condition = RecordFilter.Condition.parse("name!=a=b");
+    assertEquals("name", condition.fieldPath.toString());
+    assertEquals("a=b", condition.value);
+    assertTrue(condition.negated);
+    // a value may hold the negated operator
+    condition = RecordFilter.Condition.parse("name=x!=y");
+    assertEquals("name", condition.fieldPath.toString());
+    assertEquals("x!=y", condition.value);
+    assertFalse(condition.negated);
+    assertEquals("", RecordFilter.Condition.parse("favorite.color=").value);
+  }
+
+  @Test
+  void conditions() throws IOException {
+    assertEquals(Collections.singletonList("Ben"), names(filter("favorite.color=red")));
+    assertEquals(Arrays.asList("Alyssa", "Charlie"), names(filter("favorite.color!=red")));
+    // a missing value reads as null
+    assertEquals(Collections.singletonList("Alyssa"), names(filter("favorite.color=null")));
+    assertEquals(Collections.emptyList(), names(filter("favorite.color=red", "name=Charlie")));
+  }
+
+  @Test
+  void unknownFields() throws IOException {
+    Schema schema = SampleUsers.schema();
+    filter("favorite.color=red", "lst3.x=a").validate(schema);
+    for (String expression : Arrays.asList("colour=red", "favorite..color=red", "name.x=a")) {
+      assertThrows(
+          IllegalArgumentException.class, () -> filter(expression).validate(schema), expression);
+    }
+    RecordFilter sampled =
+        new RecordFilter(Collections.emptyList(), 0.5, FieldPath.parse("favorite.colour"));
+    assertThrows(IllegalArgumentException.class, () -> sampled.validate(schema));
+  }
+
+  @Test
+  void sampling() throws IOException {
+    assertThrows(
+        IllegalArgumentException.class, () -> new RecordFilter(Collections.emptyList(), 1.5, null));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new RecordFilter(Collections.emptyList(), -0.1, null));
+    RecordFilter none = new RecordFilter(Collections.emptyList(), 0.0, null);
+    assertEquals(Collections.emptyList(), names(none));
+    // the decision only depends on the key
+    RecordFilter half = new RecordFilter(Collections.emptyList(), 0.5, FieldPath.parse("name"));
+    assertEquals(names(half), names(half));
+    for (GenericRecord record : SampleUsers.records()) {
+      GenericRecord copy = SampleUsers.records().get(0);
+      copy.put("name", record.get("name"));
+      assertEquals(half.test(record), half.test(copy));
+    }
+  }
+
+  // the hash of a projected record depends on the projection, the sample needs a key
+  @Test
+  void keylessSampleOfProjection() throws IOException {
+    Schema schema = SampleUsers.schema();
+    ExportOptions projected = new ExportOptions().withFields(List.of("name")).withSample(0.5);
+    IllegalArgumentException e =
+        assertThrows(IllegalArgumentException.class, () -> projected.recordFilter(schema));
+    assertTrue(e.getMessage().contains("key field"));
+    ExportOptions readerSchema = new ExportOptions().withReaderSchema(schema).withSample(0.5);
+    assertThrows(IllegalArgumentException.class, () -> readerSchema.recordFilter(schema));
+
+    ExportOptions keyed = new ExportOptions().withFields(List.of("name")).withSample(0.5, "name");
+    ExportOptions whole = new ExportOptions().withSample(0.5, "name");
+    assertEquals(names(keyed.recordFilter(schema)), names(whole.recordFilter(schema)));
+    assertNotNull(new ExportOptions().withSample(0.5).recordFilter(schema));
+  }
+
+  // the records left out leave no gap, Charlie follows Alyssa's 4 rows
+  @Test
+  void filteredExport() throws Exception {
+    Schema schema = SampleUsers.schema();
+    File avroFile = SampleUsers.avroFile("users.avro");
+    File excelFile = TestOutput.file("users_filtered.xlsx");
+    ExportOptions exportOptions = new ExportOptions().withFilter("favorite.color!=red");
+
+    AvroToExcelConverter.convert(avroFile, excelFile, null, 1, 2, exportOptions);
+
+    List<String> dump = ExcelWorkbookDescriptor.dump(excelFile, "tab");
+    assertTrue(dump.contains("Cell: B8 = Alyssa"));
+    assertTrue(dump.contains("Cell: B12 = Charlie"));
+    assertFalse(dump.contains("Cell: D12 = red"));
+    File backAvroFile = TestOutput.file("back_filtered.avro");
+    ExcelToAvroConverter.convert(excelFile, backAvroFile, "tab", 1, 2, schema);
+    assertEquals(Arrays.asList("Alyssa", "Charlie"), AvroDescriptor.values(backAvroFile, "name"));
+    assertEquals(
+        Arrays.asList("null", "blue"), AvroDescriptor.values(backAvroFile, "favorite.color"));
+
+    // only the headers are written
+    ExportOptions sampleNone = new ExportOptions().withSample(0.0, "name");
+    AvroToExcelConverter.convert(avroFile, excelFile, null, 1, 2, sampleNone);
+    dump = ExcelWorkbookDescriptor.dump(excelFile, "tab");
+    assertTrue(dump.contains("Cell: B3 = name"));
+    assertFalse(dump.stream().anyMatch(line -> line.startsWith("Cell: B8 ")));
+    ExcelToAvroConverter.convert(excelFile, backAvroFile, "tab", 1, 2, schema);
+    assertEquals(Collections.emptyList(), AvroDescriptor.values(backAvroFile, "name"));
+  }
+}
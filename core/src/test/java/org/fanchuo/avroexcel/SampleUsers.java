@@ -0,0 +1,165 @@
+package org.fanchuo.avroexcel;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import org.apache.avro.Schema;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.DatumWriter;
+
+// the users of user.avsc shared by the tests
+public class SampleUsers {
+  private SampleUsers() {}
+
+  public static Schema schema() throws IOException {
+    try (InputStream is = SampleUsers.class.getResourceAsStream("/user.avsc")) {
+      return new Schema.Parser().parse(is);
+    }
+  }
+
+  // the sample users written to an Avro file in the test output directory
+  public static File avroFile(String name) throws IOException {
+    File file = TestOutput.file(name);
+    write(file, schema());
+    return file;
+  }
+
+  // the sample users read back from an Avro file, in the order they were written
+  public static List<GenericRecord> records() throws IOException {
+    List<GenericRecord> records = new ArrayList<>();
+    try (AvroReader avroReader = new AvroReader(avroFile("records_users.avro"))) {
+      avroReader.process(records::add);
+    }
+    return records;
+  }
+
+  // every sheet holds the sample users repeated copies times, exported at B3
+  public static void workbook(File excelFile, List<String> sheetNames, int copies)
+      throws IOException {
+    List<GenericRecord> records = records();
+    try (WorkbookWriter workbookWriter = new WorkbookWriter(excelFile)) {
+      for (String sheetName : sheetNames) {
+        SheetExporter sheetExporter =
+            new SheetExporter(workbookWriter.createSheet(sheetName), schema(), 1, 2);
+        sheetExporter.writeHeaders();
+        for (int i = 0; i < copies; i++) {
+          records.forEach(sheetExporter);
+        }
+        sheetExporter.finish();
+      }
+    }
+  }
+
+  // Alyssa, Ben and Charlie, their records take 4, 4 and 1 rows of the sheet
+  public static void write(File file, Schema schema) throws IOException {
+    GenericData genericData = AvroReader.makeGenericData();
+    Schema favoriteSchema = schema.getField("favorite").schema();
+    Integer pointSchemaIdx = schema.getField("lst2").schema().getIndexNamed("array");
+    Schema pointSchema =
+        schema.getField("lst2").schema().getTypes().get(pointSchemaIdx).getElementType();
+    Integer weirdIdx = schema.getField("strange_stuff").schema().getIndexNamed("array");
+    Schema weird =
+        schema.getField("strange_stuff").schema().getTypes().get(weirdIdx).getElementType();
+    Schema weird2 = weird.getField("strange_map").schema().getValueType();
+
+    DatumWriter<GenericRecord> datumWriter = new GenericDatumWriter<>(schema, genericData);
+    try (DataFileWriter<GenericRecord> dataFileWriter = new DataFileWriter<>(datumWriter)) {
+      dataFileWriter.create(schema, file);
+
+      // User 1
+      GenericRecord user1 = new GenericData.Record(schema);
+      GenericRecord favorite1 = new GenericData.Record(favoriteSchema);
+      favorite1.put("number", 256);
+      favorite1.put("color", null);
+      user1.put("name", "Alyssa");
+      user1.put("favorite", favorite1);
+      user1.put("creation_date", Instant.parse("2025-01-01T00:00:00.000Z").toEpochMilli());
+      user1.put("liste_optionnelle", Collections.EMPTY_LIST);
+      user1.put("lst2", null);
+      user1.put("lst3", "ABC");
+      Map<String, String> mapExample = new HashMap<>();
+      mapExample.put("a", "b");
+      mapExample.put("c", "d");
+      user1.put("map_example", mapExample);
+      List<GenericRecord> strangeStuff = new ArrayList<>();
+      GenericRecord strangeStuff1 = new GenericData.Record(weird);
+      strangeStuff.add(strangeStuff1);
+      strangeStuff1.put("bool_val", Boolean.TRUE);
+      strangeStuff1.put("local_date", LocalDate.of(2025, 1, 2));
+      strangeStuff1.put("local_datetime", LocalDateTime.of(2025, 1, 25, 19, 45));
+      GenericRecord strangeStuff2 = new GenericData.Record(weird);
+      strangeStuff.add(strangeStuff2);
+      strangeStuff2.put("bool_val", Boolean.FALSE);
+      strangeStuff2.put("local_date", LocalDate.of(2025, 2, 1));
+      strangeStuff2.put("local_datetime", LocalDateTime.of(2025, 3, 25, 19, 45));
+      Map<String, GenericRecord> strangeMap1 = new HashMap<>();
+      strangeStuff1.put("strange_map", strangeMap1);
+      Map<String, GenericRecord> strangeMap2 = new HashMap<>();
+      strangeStuff2.put("strange_map", strangeMap2);
+      GenericRecord weird11 = new GenericData.Record(weird2);
+      weird11.put("a", "z");
+      weird11.put("b", "y");
+      strangeMap1.put("comp", weird11);
+      GenericRecord weird12 = new GenericData.Record(weird2);
+      weird12.put("a", "Z");
+      weird12.put("b", "Y");
+      strangeMap1.put("COMP2", weird12);
+      GenericRecord weird21 = new GenericData.Record(weird2);
+      weird21.put("a", "123");
+      weird21.put("b", "456");
+      strangeMap2.put("comp", weird21);
+      GenericRecord weird22 = new GenericData.Record(weird2);
+      weird22.put("a", "098");
+      weird22.put("b", "765");
+      strangeMap2.put("qwerty", weird22);
+      user1.put("strange_stuff", strangeStuff);
+      dataFileWriter.append(user1);
+
+      // User 2
+      GenericRecord user2 = new GenericData.Record(schema);
+      GenericRecord favorite2 = new GenericData.Record(favoriteSchema);
+      favorite2.put("number", 7);
+      favorite2.put("color", "red");
+      user2.put("name", "Ben");
+      user2.put("favorite", favorite2);
+      user2.put("creation_date", Instant.parse("2025-01-02T00:00:00.000Z").toEpochMilli());
+      user2.put("liste_optionnelle", Collections.singleton(123.4));
+      GenericRecord point1 = new GenericData.Record(pointSchema);
+      point1.put("x", "azerty");
+      point1.put("y", "uiop");
+      GenericRecord point2 = new GenericData.Record(pointSchema);
+      point2.put("x", "qsdfg");
+      point2.put("y", "hjklm");
+      user2.put("lst2", Arrays.asList(point1, point2));
+      user2.put("lst3", "DEF");
+      user2.put("matrix", Arrays.asList(Arrays.asList(1.0, 2.0), Arrays.asList(3.0, 4.0)));
+      dataFileWriter.append(user2);
+
+      // User 3
+      GenericRecord user3 = new GenericData.Record(schema);
+      GenericRecord favorite3 = new GenericData.Record(favoriteSchema);
+      favorite3.put("number", null);
+      favorite3.put("color", "blue");
+      user3.put("name", "Charlie");
+      user3.put("favorite", favorite3);
+      user3.put("creation_date", Instant.parse("2025-01-03T00:00:00.000Z").toEpochMilli());
+      user3.put("liste_optionnelle", Collections.singleton(null));
+      GenericRecord point = new GenericData.Record(pointSchema);
+      point.put("x", "xx");
+      point.put("y", "yy");
+      user3.put("lst2", Collections.singleton(point));
+      GenericRecord pointToo = new GenericData.Record(pointSchema);
+      pointToo.put("x", "GHI");
+      pointToo.put("y", "JKL");
+      user3.put("lst3", pointToo);
+      dataFileWriter.append(user3);
+    }
+  }
+}
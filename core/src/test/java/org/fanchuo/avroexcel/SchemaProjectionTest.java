@@ -0,0 +1,128 @@
+package org.fanchuo.avroexcel;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.apache.avro.Schema;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class SchemaProjectionTest {
+  @BeforeEach
+  void setUp() throws IOException {
+    TestOutput.reset();
+  }
+
+  private static Schema project(Schema schema, String... fieldPaths) {
+    List<FieldPath> parsed = new ArrayList<>();
+    for (String fieldPath : fieldPaths) {
+      parsed.add(FieldPath.parse(fieldPath));
+    }
+    return SchemaProjection.project(schema, parsed);
+  }
+
+  private static List<String> fieldNames(Schema record) {
+    List<String> names = new ArrayList<>();
+    for (Schema.Field field : record.getFields()) {
+      names.add(field.name());
+    }
+    return names;
+  }
+
+  @Test
+  void keepsPaths() throws IOException {
+    Schema projected = project(SampleUsers.schema(), "favorite.color", "name");
+    // the fields keep the order of the writer schema and the records their full names
+    assertEquals(Arrays.asList("name", "favorite"), fieldNames(projected));
+    Schema favorite = projected.getField("favorite").schema();
+    assertEquals("Favorite", favorite.getFullName());
+    assertEquals(Collections.singletonList("color"), fieldNames(favorite));
+  }
+
+  @Test
+  void wholeFieldWins() throws IOException {
+    Schema schema = SampleUsers.schema();
+    Schema projected = project(schema, "favorite.color", "favorite");
+    assertEquals(schema.getField("favorite").schema(), projected.getField("favorite").schema());
+  }
+
+  @Test
+  void missingPath() throws IOException {
+    Schema schema = SampleUsers.schema();
+    IllegalArgumentException e =
+        assertThrows(IllegalArgumentException.class, () -> project(schema, "colour"));
+    assertEquals("No field colour in record User", e.getMessage());
+    e = assertThrows(IllegalArgumentException.class, () -> project(schema, "favorite.colour"));
+    assertEquals("No field favorite.colour in record Favorite", e.getMessage());
+    e = assertThrows(IllegalArgumentException.class, () -> project(schema, "name.first"));
+    assertEquals("No field name.first in string", e.getMessage());
+    // the only record branch of a union must have the field
+    e = assertThrows(IllegalArgumentException.class, () -> project(schema, "lst3.z"));
+    assertEquals("No field lst3.z in record Oui", e.getMessage());
+  }
+
+  @Test
+  void unionBranches() {
+    Schema schema =
+        new Schema.Parser()
+            .parse(
+                "{\"type\": \"record\", \"name\": \"Shape\", \"fields\": [{\"name\": \"value\","
+                    + " \"type\": [{\"type\": \"record\", \"name\": \"Circle\", \"fields\":"
+                    + " [{\"name\": \"radius\", \"type\": \"double\"}]}, {\"type\": \"record\","
+                    + " \"name\": \"Square\", \"fields\": [{\"name\": \"side\", \"type\":"
+                    + " \"double\"}]}]}]}");
+    // with several record branches, a field only has to exist in one of them
+    List<Schema> branches = project(schema, "value.radius").getField("value").schema().getTypes();
+    assertEquals(Collections.singletonList("radius"), fieldNames(branches.get(0)));
+    assertEquals(Collections.emptyList(), fieldNames(branches.get(1)));
+  }
+
+  @Test
+  void sharedRecords() throws IOException {
+    Schema schema = SampleUsers.schema();
+    // lst2 and lst3 both hold Oui records, Avro allows one definition per name
+    project(schema, "lst2.x", "lst3.x");
+    IllegalArgumentException e =
+        assertThrows(IllegalArgumentException.class, () -> project(schema, "lst2.x", "lst3.y"));
+    assertEquals(
+        "Record Oui is used in several places with different projections", e.getMessage());
+  }
+
+  // without collections left, every record takes a single row
+  @Test
+  void projectedExport() throws Exception {
+    File avroFile = SampleUsers.avroFile("users.avro");
+    File excelFile = TestOutput.file("users_projected.xlsx");
+    ExportOptions exportOptions =
+        new ExportOptions().withFields(Arrays.asList("name", "favorite.color"));
+
+    AvroToExcelConverter.convert(avroFile, excelFile, null, 1, 2, exportOptions);
+
+    assertEquals(
+        Arrays.asList(
+            "Cell: B3 = name",
+            "Cell: C3 = favorite",
+            "Cell: C4 = color",
+            "Cell: B5 = Alyssa",
+            "Cell: B6 = Ben",
+            "Cell: C6 = red",
+            "Cell: B7 = Charlie",
+            "Cell: C7 = blue",
+            "B3:B4"),
+        ExcelWorkbookDescriptor.dump(excelFile, "tab"));
+    // the saved schema is the projected one
+    File backAvroFile = TestOutput.file("back_projected.avro");
+    ExcelToAvroConverter.convert(excelFile, backAvroFile, "tab");
+    assertEquals(
+        Arrays.asList(
+            "{\"name\": \"Alyssa\", \"favorite\": {\"color\": null}}",
+            "{\"name\": \"Ben\", \"favorite\": {\"color\": \"red\"}}",
+            "{\"name\": \"Charlie\", \"favorite\": {\"color\": \"blue\"}}"),
+        AvroDescriptor.convert(backAvroFile));
+  }
+}
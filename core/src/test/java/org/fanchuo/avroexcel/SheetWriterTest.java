@@ -0,0 +1,216 @@
+package org.fanchuo.avroexcel;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.avro.Schema;
+import org.apache.poi.ss.usermodel.ConditionalFormatting;
+import org.apache.poi.ss.usermodel.SheetConditionalFormatting;
+import org.apache.poi.xssf.usermodel.XSSFCell;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.fanchuo.avroexcel.headerinfo.HeaderInfoAvroSchemaReader;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.STCellType;
+
+class SheetWriterTest {
+  @BeforeEach
+  void setUp() throws IOException {
+    TestOutput.reset();
+  }
+
+  private static List<CellRangeAddress> mergedRegions(File excelFile, String sheetName)
+      throws IOException {
+    try (InputStream is = new FileInputStream(excelFile);
+        XSSFWorkbook workbook = new XSSFWorkbook(is)) {
+      XSSFSheet sheet = workbook.getSheet(sheetName);
+      assertEquals(
+          sheet.getNumMergedRegions(), sheet.getCTWorksheet().getMergeCells().getCount());
+      return sheet.getMergedRegions();
+    }
+  }
+
+  // the type saved for the name of the first record, at B8
+  private static STCellType.Enum nameCellType(File excelFile) throws IOException {
+    try (InputStream is = new FileInputStream(excelFile);
+        XSSFWorkbook workbook = new XSSFWorkbook(is)) {
+      return ((XSSFCell) workbook.getSheet("tab").getRow(7).getCell(1)).getCTCell().getT();
+    }
+  }
+
+  @Test
+  void bulkRegionsMatchAddMergedRegion() throws IOException {
+    File excelFile = TestOutput.file("bulk.xlsx");
+    SampleUsers.workbook(excelFile, Collections.singletonList("tab"), 20);
+    List<CellRangeAddress> bulk = mergedRegions(excelFile, "tab");
+    assertFalse(bulk.isEmpty());
+
+    // POI's own method checks every region against the others
+    File replayFile = TestOutput.file("replay.xlsx");
+    try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+      XSSFSheet sheet = workbook.createSheet("tab");
+      for (CellRangeAddress region : bulk) {
+        sheet.addMergedRegion(region);
+      }
+      try (OutputStream os = new FileOutputStream(replayFile)) {
+        workbook.write(os);
+      }
+    }
+    assertEquals(bulk, mergedRegions(replayFile, "tab"));
+  }
+
+  // the overlap check is an assertion, the tests run with assertions enabled
+  @Test
+  void overlapFailsWithAssertions() throws IOException {
+    Assumptions.assumeTrue(SheetWriter.class.desiredAssertionStatus());
+    WorkbookWriter workbookWriter = new WorkbookWriter(TestOutput.file("overlap.xlsx"));
+    try {
+      SheetWriter sheetWriter = workbookWriter.createSheet("tab");
+      sheetWriter.addMergedRegion(2, 4, 1, 1);
+      sheetWriter.addMergedRegion(6, 7, 1, 2);
+      sheetWriter.addMergedRegion(4, 5, 0, 1);
+      IllegalStateException e =
+          assertThrows(IllegalStateException.class, sheetWriter::flushMergedRegions);
+      assertEquals("Merged regions B3:B5 and A5:B6 overlap", e.getMessage());
+    } finally {
+      workbookWriter.discard();
+    }
+  }
+
+  // the strategies only change how the strings are saved, not the cells read back
+  @Test
+  void stringStrategies() throws Exception {
+    Schema schema = SampleUsers.schema();
+    File avroFile = SampleUsers.avroFile("users.avro");
+    File sharedFile = TestOutput.file("users_shared.xlsx");
+    File inlineFile = TestOutput.file("users_inline.xlsx");
+    File autoFile = TestOutput.file("users_auto.xlsx");
+
+    AvroToExcelConverter.convert(avroFile, sharedFile, null, 1, 2);
+    AvroToExcelConverter.convert(
+        avroFile,
+        inlineFile,
+        null,
+        1,
+        2,
+        new ExportOptions().withStringStrategy(ExportOptions.StringStrategy.INLINE));
+    AvroToExcelConverter.convert(
+        avroFile,
+        autoFile,
+        null,
+        1,
+        2,
+        new ExportOptions().withStringStrategy(ExportOptions.StringStrategy.AUTO));
+
+    assertEquals(STCellType.S, nameCellType(sharedFile));
+    assertEquals(STCellType.INLINE_STR, nameCellType(inlineFile));
+    List<String> expected = ExcelWorkbookDescriptor.dump(sharedFile, "tab");
+    assertTrue(expected.contains("Cell: B8 = Alyssa"));
+    assertEquals(expected, ExcelWorkbookDescriptor.dump(inlineFile, "tab"));
+    assertEquals(expected, ExcelWorkbookDescriptor.dump(autoFile, "tab"));
+    File sharedAvroFile = TestOutput.file("back_shared.avro");
+    ExcelToAvroConverter.convert(sharedFile, sharedAvroFile, "tab", 1, 2, schema);
+    File inlineAvroFile = TestOutput.file("back_inline.avro");
+    ExcelToAvroConverter.convert(inlineFile, inlineAvroFile, "tab", 1, 2, schema);
+    assertEquals(AvroDescriptor.convert(sharedAvroFile), AvroDescriptor.convert(inlineAvroFile));
+    assertEquals(
+        List.of("Alyssa", "Ben", "Charlie"), AvroDescriptor.values(inlineAvroFile, "name"));
+  }
+
+  @Test
+  void conditionalBanding() throws Exception {
+    Schema schema = SampleUsers.schema();
+    File avroFile = SampleUsers.avroFile("users.avro");
+    File styledFile = TestOutput.file("users_styled.xlsx");
+    File bandedFile = TestOutput.file("users_banded.xlsx");
+    ExportOptions exportOptions =
+        new ExportOptions().withBanding(ExportOptions.Banding.CONDITIONAL_FORMATTING);
+
+    AvroToExcelConverter.convert(avroFile, styledFile, null, 1, 2);
+    AvroToExcelConverter.convert(avroFile, bandedFile, null, 1, 2, exportOptions);
+
+    // the records take several rows, a hidden column right of the data marks the even ones
+    int bandCol = 1 + HeaderInfoAvroSchemaReader.visitSchema(null, schema).colSpan;
+    String bandColumn = CellReference.convertNumToColString(bandCol);
+    List<String> banded = new ArrayList<>();
+    for (String line : ExcelWorkbookDescriptor.dump(bandedFile, "tab")) {
+      if (!line.matches("Cell: " + bandColumn + "\\d+ = .*")) banded.add(line);
+    }
+    assertEquals(ExcelWorkbookDescriptor.dump(styledFile, "tab"), banded);
+    try (InputStream is = new FileInputStream(bandedFile);
+        XSSFWorkbook workbook = new XSSFWorkbook(is)) {
+      XSSFSheet sheet = workbook.getSheet("tab");
+      SheetConditionalFormatting formatting = sheet.getSheetConditionalFormatting();
+      assertEquals(2, formatting.getNumConditionalFormattings());
+      ConditionalFormatting even = formatting.getConditionalFormattingAt(0);
+      // the data rows, from Alyssa's first row 8 to Charlie's row 16
+      assertEquals(1, even.getFormattingRanges().length);
+      assertEquals(new CellRangeAddress(7, 15, 1, bandCol - 1), even.getFormattingRanges()[0]);
+      assertEquals("$" + bandColumn + "8=1", even.getRule(0).getFormula1());
+      assertTrue(sheet.isColumnHidden(bandCol));
+      // Alyssa takes rows 8 to 11, Ben the even record rows 12 to 15, Charlie row 16
+      for (int row = 7; row < 16; row++) {
+        XSSFCell cell = sheet.getRow(row).getCell(bandCol);
+        if (row >= 11 && row < 15) assertEquals(1, cell.getNumericCellValue(), "row " + row);
+        else assertNull(cell, "row " + row);
+      }
+    }
+    File styledAvroFile = TestOutput.file("back_styled.avro");
+    ExcelToAvroConverter.convert(styledFile, styledAvroFile, "tab", 1, 2, schema);
+    File bandedAvroFile = TestOutput.file("back_banded.avro");
+    ExcelToAvroConverter.convert(bandedFile, bandedAvroFile, "tab", 1, 2, schema);
+    assertEquals(AvroDescriptor.convert(styledAvroFile), AvroDescriptor.convert(bandedAvroFile));
+  }
+
+  // the values of a record are repeated on each of its rows instead of merged
+  @Test
+  void fillDownLayout() throws Exception {
+    Schema schema = SampleUsers.schema();
+    File avroFile = SampleUsers.avroFile("users.avro");
+    File excelFile = TestOutput.file("users_fill_down.xlsx");
+
+    AvroToExcelConverter.convert(
+        avroFile,
+        excelFile,
+        null,
+        1,
+        2,
+        new ExportOptions().withLayout(ExportOptions.Layout.FILL_DOWN));
+
+    try (InputStream is = new FileInputStream(excelFile);
+        XSSFWorkbook workbook = new XSSFWorkbook(is)) {
+      XSSFSheet sheet = workbook.getSheet("tab");
+      // only the headers are merged, the records take rows 8 to 16
+      for (CellRangeAddress region : sheet.getMergedRegions()) {
+        assertTrue(region.getLastRow() < 7, region.formatAsString());
+      }
+      List<String> names = new ArrayList<>();
+      for (int row = 7; row < 16; row++) {
+        names.add(sheet.getRow(row).getCell(1).getStringCellValue());
+      }
+      assertEquals(
+          List.of(
+              "Alyssa", "Alyssa", "Alyssa", "Alyssa", "Ben", "Ben", "Ben", "Ben", "Charlie"),
+          names);
+    }
+    File mergedFile = TestOutput.file("users_merged_layout.xlsx");
+    AvroToExcelConverter.convert(avroFile, mergedFile, null, 1, 2, new ExportOptions());
+    File backAvroFile = TestOutput.file("back_users_fill_down.avro");
+    ExcelToAvroConverter.convert(excelFile, backAvroFile, "tab", 1, 2, schema);
+    File mergedAvroFile = TestOutput.file("back_users_merged_layout.avro");
+    ExcelToAvroConverter.convert(mergedFile, mergedAvroFile, "tab", 1, 2, schema);
+    assertEquals(AvroDescriptor.convert(mergedAvroFile), AvroDescriptor.convert(backAvroFile));
+  }
+}
@@ -0,0 +1,30 @@
+package org.fanchuo.avroexcel;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+public class TestOutput {
+  public static final Path DIR = Path.of("build", "test-output");
+
+  private TestOutput() {}
+
+  // called before each test, so a test only sees the files it wrote
+  public static void reset() throws IOException {
+    if (Files.exists(DIR)) {
+      try (Stream<Path> paths = Files.walk(DIR)) {
+        boolean result =
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).allMatch(File::delete);
+        if (!result) throw new IOException("Failed to delete directory");
+      }
+    }
+    Files.createDirectories(DIR);
+  }
+
+  public static File file(String name) {
+    return DIR.resolve(name).toFile();
+  }
+}
@@ -0,0 +1,45 @@
+package org.fanchuo.avroexcel;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import org.apache.avro.Schema;
+import org.fanchuo.avroexcel.parallel.RecordPublisher;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class WorkbookSubscriberTest {
+  @BeforeEach
+  void setUp() throws IOException {
+    TestOutput.reset();
+  }
+
+  // the sheets written from a publisher are the ones written by convert
+  @Test
+  void publishedRecords() throws Exception {
+    Schema schema = SampleUsers.schema();
+    File avroFile = SampleUsers.avroFile("users.avro");
+    File expectedFile = TestOutput.file("users.xlsx");
+    AvroToExcelConverter.convert(avroFile, expectedFile, null, 1, 2);
+    List<String> expected = ExcelWorkbookDescriptor.dump(expectedFile, "tab");
+    File excelFile = TestOutput.file("users_flow.xlsx");
+    File copyFile = TestOutput.file("users_flow_copy.xlsx");
+
+    WorkbookSubscriber toExcel = new WorkbookSubscriber(excelFile, null, schema, 1, 2);
+    new RecordPublisher<>(new AvroReader(avroFile)).subscribe(toExcel);
+    assertEquals(3, toExcel.getResult().get().longValue());
+    assertEquals(expected, ExcelWorkbookDescriptor.dump(excelFile, "tab"));
+
+    WorkbookSubscriber copy = new WorkbookSubscriber(copyFile, null, schema, 1, 2);
+    ExcelToAvroConverter.publisher(excelFile, "tab", 1, 2, schema, ForkJoinPool.commonPool())
+        .subscribe(copy);
+    assertEquals(3, copy.getResult().get().longValue());
+    assertEquals(expected, ExcelWorkbookDescriptor.dump(copyFile, "tab"));
+    File backAvroFile = TestOutput.file("back_users_flow_copy.avro");
+    ExcelToAvroConverter.convert(copyFile, backAvroFile, "tab", 1, 2, schema);
+    assertEquals(List.of("Alyssa", "Ben", "Charlie"), AvroDescriptor.values(backAvroFile, "name"));
+  }
+}
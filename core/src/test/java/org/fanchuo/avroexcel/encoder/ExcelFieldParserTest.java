@@ -0,0 +1,49 @@
+package org.fanchuo.avroexcel.encoder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDate;
+import org.apache.avro.Schema;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.fanchuo.avroexcel.excelutil.ExcelSheetReader;
+import org.junit.jupiter.api.Test;
+
+public class ExcelFieldParserTest {
+  @Test
+  void withoutSheetReader() throws Exception {
+    try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+      Sheet sheet = workbook.createSheet("tab");
+      Row row = sheet.createRow(0);
+      row.createCell(0).setCellValue("FR");
+      Cell date = row.createCell(1);
+      CellStyle dateStyle = workbook.createCellStyle();
+      dateStyle.setDataFormat(
+          workbook.getCreationHelper().createDataFormat().getFormat("yyyy-mm-dd"));
+      date.setCellStyle(dateStyle);
+      date.setCellValue(LocalDate.of(2025, 1, 31));
+      row.createCell(2).setCellValue(42);
+      Schema dateSchema =
+          new Schema.Parser().parse("{\"type\": \"int\", \"logicalType\": \"date\"}");
+      Schema[] schemas = {
+        Schema.create(Schema.Type.STRING), dateSchema, Schema.create(Schema.Type.LONG)
+      };
+      Object[] expected = {"FR", LocalDate.of(2025, 1, 31), 42L};
+
+      ExcelFieldParser plain = new ExcelFieldParser();
+      ExcelFieldParser cached = new ExcelFieldParser(new ExcelSheetReader(sheet));
+      for (int i = 0; i < schemas.length; i++) {
+        Cell cell = row.getCell(i);
+        ExcelFieldParser.TypeParser typeParser =
+            plain.checkCompatible(schemas[i], cell, cell.getAddress());
+        assertTrue(typeParser.isCompatible(), String.valueOf(typeParser.errorMessage));
+        assertEquals(expected[i], typeParser.value);
+        assertEquals(
+            expected[i], cached.checkCompatible(schemas[i], cell, cell.getAddress()).value);
+      }
+    }
+  }
+}
@@ -0,0 +1,102 @@
+package org.fanchuo.avroexcel.encoder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericRecord;
+import org.fanchuo.avroexcel.ExcelToAvroConverter;
+import org.fanchuo.avroexcel.SampleUsers;
+import org.fanchuo.avroexcel.TestOutput;
+import org.fanchuo.avroexcel.excelutil.ExcelSheetReader;
+import org.fanchuo.avroexcel.headerinfo.HeaderInfo;
+import org.fanchuo.avroexcel.headerinfo.HeaderInfoExcelReader;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ExcelRecordSpliteratorTest {
+  private static final int COPIES = 100;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    TestOutput.reset();
+  }
+
+  private static File workbook() throws IOException {
+    File excelFile = TestOutput.file("users_many.xlsx");
+    SampleUsers.workbook(excelFile, Collections.singletonList("tab"), COPIES);
+    return excelFile;
+  }
+
+  private static List<String> expectedNames() {
+    List<String> names = new ArrayList<>();
+    for (int i = 0; i < COPIES; i++) {
+      names.addAll(List.of("Alyssa", "Ben", "Charlie"));
+    }
+    return names;
+  }
+
+  private static List<String> names(Spliterator<GenericRecord> spliterator) {
+    List<String> names = new ArrayList<>();
+    spliterator.forEachRemaining(record -> names.add(record.get("name").toString()));
+    return names;
+  }
+
+  @Test
+  void parallelStreamKeepsTheOrder() throws Exception {
+    Schema schema = SampleUsers.schema();
+    File excelFile = workbook();
+
+    List<String> sequential =
+        ExcelToAvroConverter.stream(excelFile, "tab", 1, 2, schema)
+            .map(String::valueOf)
+            .collect(Collectors.toList());
+    List<String> parallel =
+        ExcelToAvroConverter.stream(excelFile, "tab", 1, 2, schema)
+            .parallel()
+            .map(String::valueOf)
+            .collect(Collectors.toList());
+    List<String> colors =
+        ExcelToAvroConverter.stream(excelFile, "tab", 1, 2, schema)
+            .parallel()
+            .map(r -> String.valueOf(((GenericRecord) r.get("favorite")).get("color")))
+            .collect(Collectors.toList());
+
+    assertEquals(sequential, parallel);
+    assertEquals(3 * COPIES, parallel.size());
+    for (int i = 0; i < parallel.size(); i += 3) {
+      assertTrue(parallel.get(i).startsWith("{\"name\": \"Alyssa\""), parallel.get(i));
+      assertTrue(parallel.get(i + 2).startsWith("{\"name\": \"Charlie\""), parallel.get(i + 2));
+      assertEquals(List.of("null", "red", "blue"), colors.subList(i, i + 3));
+    }
+  }
+
+  // the prefix ends where a record of the rest starts, no record is cut or read twice
+  @Test
+  void splitOnRecordBoundary() throws Exception {
+    Schema schema = SampleUsers.schema();
+    ExcelSheetReader excelSheetReader;
+    try (InputStream is = new FileInputStream(workbook())) {
+      excelSheetReader = ExcelSheetReader.loadSheet(is, "tab");
+    }
+    HeaderInfo headerInfo = HeaderInfoExcelReader.visitSheet(excelSheetReader, 1, 2);
+    ExcelRecordSpliterator rest =
+        new ExcelRecordSpliterator(excelSheetReader, schema, headerInfo, 1, 2 + headerInfo.rowSpan);
+
+    Spliterator<GenericRecord> prefix = rest.trySplit();
+
+    assertNotNull(prefix);
+    List<String> names = names(prefix);
+    assertFalse(names.isEmpty());
+    names.addAll(names(rest));
+    assertEquals(expectedNames(), names);
+  }
+}
@@ -0,0 +1,211 @@
+package org.fanchuo.avroexcel.encoder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericRecord;
+import org.fanchuo.avroexcel.AvroDescriptor;
+import org.fanchuo.avroexcel.ExcelToAvroConverter;
+import org.fanchuo.avroexcel.FileConversionResult;
+import org.fanchuo.avroexcel.ImportOptions;
+import org.fanchuo.avroexcel.ImportResult;
+import org.fanchuo.avroexcel.SampleUsers;
+import org.fanchuo.avroexcel.SheetConversionResult;
+import org.fanchuo.avroexcel.SheetMapping;
+import org.fanchuo.avroexcel.TestOutput;
+import org.fanchuo.avroexcel.excelutil.ExcelSheetReader;
+import org.fanchuo.avroexcel.excelutil.SheetRows;
+import org.fanchuo.avroexcel.headerinfo.HeaderInfo;
+import org.fanchuo.avroexcel.headerinfo.HeaderInfoExcelReader;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ExcelToAvroTest {
+  @BeforeEach
+  void setUp() throws Exception {
+    TestOutput.reset();
+  }
+
+  // decodes the copied records on two threads while the workbook lock is held: both threads wait
+  // for each other before decoding, so they decode at the same time and neither takes the lock
+  private static GenericRecord[] decodeTogether(
+      ExcelSheetReader excelSheetReader, ExcelToAvro first, ExcelToAvro second) throws Exception {
+    SheetRows firstRows = first.copyRecord();
+    SheetRows secondRows = second.copyRecord();
+    CyclicBarrier bothDecoding = new CyclicBarrier(2);
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    GenericRecord[] records = new GenericRecord[2];
+    try {
+      synchronized (excelSheetReader.getWorkbookLock()) {
+        Future<GenericRecord> firstRecord =
+            executor.submit(
+                () -> {
+                  bothDecoding.await(30, TimeUnit.SECONDS);
+                  return first.decode(firstRows);
+                });
+        Future<GenericRecord> secondRecord =
+            executor.submit(
+                () -> {
+                  bothDecoding.await(30, TimeUnit.SECONDS);
+                  return second.decode(secondRows);
+                });
+        records[0] = firstRecord.get(30, TimeUnit.SECONDS);
+        records[1] = secondRecord.get(30, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    assertTrue(firstRows.isComplete());
+    assertTrue(secondRows.isComplete());
+    return records;
+  }
+
+  @Test
+  void recordsDecodeAtTheSameTime() throws Exception {
+    File excelFile = TestOutput.file("users.xlsx");
+    SampleUsers.workbook(excelFile, Collections.singletonList("tab"), 1);
+    ExcelSheetReader excelSheetReader;
+    try (InputStream is = new FileInputStream(excelFile)) {
+      excelSheetReader = ExcelSheetReader.loadSheet(is, "tab");
+    }
+    HeaderInfo headerInfo = HeaderInfoExcelReader.visitSheet(excelSheetReader, 1, 2);
+    Schema schema = SampleUsers.schema();
+    int firstRow = 2 + headerInfo.rowSpan;
+    // Alyssa takes the 4 rows before Ben
+    ExcelToAvro alyssa = new ExcelToAvro(excelSheetReader, schema, headerInfo, 1, firstRow);
+    ExcelToAvro ben = new ExcelToAvro(excelSheetReader, schema, headerInfo, 1, firstRow + 4);
+
+    GenericRecord[] records = decodeTogether(excelSheetReader, alyssa, ben);
+
+    assertEquals("Alyssa", records[0].get("name").toString());
+    assertEquals("Ben", records[1].get("name").toString());
+    assertEquals("red", ((GenericRecord) records[1].get("favorite")).get("color").toString());
+    // same records as the usual decoding of the sheet
+    ExcelToAvro serial = new ExcelToAvro(excelSheetReader, schema, headerInfo, 1, firstRow);
+    assertEquals(serial.readRecord(), records[0]);
+    assertEquals(serial.readRecord(), records[1]);
+  }
+
+  // the sheets converted by convertSheets share the lock of their workbook
+  @Test
+  void sheetsDecodeAtTheSameTime() throws Exception {
+    File excelFile = TestOutput.file("sheets.xlsx");
+    SampleUsers.workbook(excelFile, Arrays.asList("first", "second"), 1);
+    Map<String, ExcelSheetReader> sheets;
+    try (InputStream is = new FileInputStream(excelFile)) {
+      sheets = ExcelSheetReader.loadSheets(is, name -> true);
+    }
+    ExcelSheetReader first = sheets.get("first");
+    ExcelSheetReader second = sheets.get("second");
+    assertSame(first.getWorkbookLock(), second.getWorkbookLock());
+    HeaderInfo headerInfo = HeaderInfoExcelReader.visitSheet(first, 1, 2);
+    Schema schema = SampleUsers.schema();
+    int firstRow = 2 + headerInfo.rowSpan;
+
+    GenericRecord[] records =
+        decodeTogether(
+            first,
+            new ExcelToAvro(first, schema, headerInfo, 1, firstRow),
+            new ExcelToAvro(second, schema, headerInfo, 1, firstRow));
+
+    assertEquals(records[0], records[1]);
+    assertEquals("Alyssa", records[1].get("name").toString());
+  }
+
+  // the schema only maps name and favorite, the other top level columns are left out
+  @Test
+  void skipUnmappedColumns() throws Exception {
+    Schema schema = SampleUsers.schema();
+    File excelFile = TestOutput.file("users.xlsx");
+    SampleUsers.workbook(excelFile, Collections.singletonList("tab"), 1);
+    Schema partial =
+        Schema.createRecord(
+            "User",
+            null,
+            null,
+            false,
+            Arrays.asList(
+                new Schema.Field("name", Schema.create(Schema.Type.STRING)),
+                new Schema.Field("favorite", schema.getField("favorite").schema())));
+    File backAvroFile = TestOutput.file("back_partial.avro");
+    List<String> skipped =
+        Arrays.asList(
+            "creation_date",
+            "liste_optionnelle",
+            "lst2",
+            "lst3",
+            "map_example",
+            "matrix",
+            "strange_stuff");
+    List<String> expected =
+        Arrays.asList(
+            "{\"name\": \"Alyssa\", \"favorite\": {\"number\": 256, \"color\": null}}",
+            "{\"name\": \"Ben\", \"favorite\": {\"number\": 7, \"color\": \"red\"}}",
+            "{\"name\": \"Charlie\", \"favorite\": {\"number\": null, \"color\": \"blue\"}}");
+
+    assertThrows(
+        ExcelSchemaException.class,
+        () -> ExcelToAvroConverter.convert(excelFile, backAvroFile, "tab", 1, 2, partial));
+    ImportOptions importOptions = new ImportOptions().withSkipUnmappedColumns(true);
+    ImportResult result =
+        ExcelToAvroConverter.convert(excelFile, backAvroFile, "tab", 1, 2, partial, importOptions);
+
+    assertEquals(3, result.recordCount);
+    assertEquals(skipped, result.skippedColumns);
+    assertEquals(expected, AvroDescriptor.convert(backAvroFile));
+    // the skipped collections still give the rows of each record
+    assertEquals(
+        expected,
+        ExcelToAvroConverter.stream(excelFile, "tab", 1, 2, partial, importOptions)
+            .map(String::valueOf)
+            .collect(Collectors.toList()));
+    List<FileConversionResult> many =
+        ExcelToAvroConverter.convertMany(
+            Arrays.asList(excelFile, excelFile),
+            backAvroFile,
+            "tab",
+            1,
+            2,
+            partial,
+            2,
+            importOptions);
+    assertEquals(skipped, many.get(0).skippedColumns);
+    assertEquals(skipped, many.get(1).skippedColumns);
+    List<String> twice = new ArrayList<>(expected);
+    twice.addAll(expected);
+    assertEquals(twice, AvroDescriptor.convert(backAvroFile));
+    File outputDir = TestOutput.file("partial_parts");
+    ImportResult rolling =
+        ExcelToAvroConverter.convertRolling(
+            excelFile, outputDir, "tab", 1, 2, partial, 0, 2, importOptions);
+    assertEquals(3, rolling.recordCount);
+    assertEquals(skipped, rolling.skippedColumns);
+    assertEquals(
+        expected.subList(2, 3), AvroDescriptor.convert(new File(outputDir, "part-00001.avro")));
+    String output = TestOutput.DIR.resolve("partial_{sheet}.avro").toString();
+    List<SheetConversionResult> sheets =
+        ExcelToAvroConverter.convertSheets(
+            excelFile,
+            Collections.singletonList(SheetMapping.forPattern("tab", partial, output)),
+            1,
+            2,
+            1,
+            importOptions);
+    assertEquals(skipped, sheets.get(0).skippedColumns);
+    assertEquals(expected, AvroDescriptor.convert(sheets.get(0).outputFile));
+  }
+}
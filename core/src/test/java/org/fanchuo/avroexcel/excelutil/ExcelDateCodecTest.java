@@ -0,0 +1,71 @@
+package org.fanchuo.avroexcel.excelutil;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.junit.jupiter.api.Test;
+
+public class ExcelDateCodecTest {
+  @Test
+  void sameAsDateUtil() {
+    LocalDateTime dateTime = LocalDateTime.of(1899, 12, 1, 13, 45, 30, 250_000_000);
+    while (dateTime.getYear() < 2100) {
+      for (boolean date1904 : new boolean[] {false, true}) {
+        double serial = ExcelDateCodec.fromLocalDateTime(dateTime, date1904);
+        assertEquals(DateUtil.getExcelDate(dateTime, date1904), serial, 1e-9);
+        if (serial > 0)
+          assertEquals(
+              DateUtil.getLocalDateTime(serial, date1904),
+              ExcelDateCodec.toLocalDateTime(serial, date1904));
+      }
+      dateTime = dateTime.plusDays(7);
+    }
+  }
+
+  @Test
+  void leapYearBug() {
+    // the 1900 system counts a 29th of February 1900, serial 60
+    assertEquals(1, ExcelDateCodec.fromLocalDate(LocalDate.of(1900, 1, 1), false));
+    assertEquals(59, ExcelDateCodec.fromLocalDate(LocalDate.of(1900, 2, 28), false));
+    assertEquals(61, ExcelDateCodec.fromLocalDate(LocalDate.of(1900, 3, 1), false));
+    assertEquals(LocalDate.of(1900, 2, 28), ExcelDateCodec.toLocalDate(59, false));
+    assertEquals(LocalDate.of(1900, 3, 1), ExcelDateCodec.toLocalDate(61, false));
+  }
+
+  @Test
+  void beforeFirstDay() {
+    assertEquals(-1, ExcelDateCodec.fromLocalDate(LocalDate.of(1899, 12, 31), false));
+    assertEquals(0, ExcelDateCodec.fromLocalDate(LocalDate.of(1904, 1, 1), true));
+    assertEquals(-1, ExcelDateCodec.fromLocalDate(LocalDate.of(1903, 12, 31), true));
+    assertEquals(
+        -1, ExcelDateCodec.fromLocalDateTime(LocalDateTime.of(1899, 12, 31, 12, 0), false));
+  }
+
+  @Test
+  void epochUnits() {
+    double noon = ExcelDateCodec.fromEpochMillis(43_200_000L, false);
+    assertEquals(25569.5, noon);
+    assertEquals(noon, ExcelDateCodec.fromEpochMicros(43_200_000_000L, false));
+    assertEquals(noon, ExcelDateCodec.fromEpochNanos(43_200_000_000_000L, false));
+    assertEquals(43_200_000L, ExcelDateCodec.toEpochMillis(noon, false));
+    assertEquals(43_200_000_000L, ExcelDateCodec.toEpochMicros(noon, false));
+    assertEquals(43_200_000_000_000L, ExcelDateCodec.toEpochNanos(noon, false));
+    assertEquals(0, ExcelDateCodec.toEpochDay(25569.99, false));
+    // a millisecond before the epoch is on the previous day
+    double beforeEpoch = ExcelDateCodec.fromEpochMillis(-1, false);
+    assertEquals(-1, ExcelDateCodec.toEpochMillis(beforeEpoch, false));
+    assertEquals(-1, ExcelDateCodec.toEpochDay(beforeEpoch, false));
+  }
+
+  @Test
+  void timeOfDay() {
+    assertEquals(LocalTime.of(18, 0), ExcelDateCodec.toLocalTime(0.75));
+    // rounded to the millisecond like DateUtil
+    assertEquals(
+        LocalDateTime.of(1970, 1, 1, 0, 0, 0, 1_000_000),
+        ExcelDateCodec.toLocalDateTime(25569 + 0.6 / 86_400_000, false));
+  }
+}
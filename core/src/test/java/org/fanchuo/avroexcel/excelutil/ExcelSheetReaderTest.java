@@ -0,0 +1,120 @@
+package org.fanchuo.avroexcel.excelutil;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import org.apache.avro.Schema;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.fanchuo.avroexcel.AvroDescriptor;
+import org.fanchuo.avroexcel.ExcelToAvroConverter;
+import org.fanchuo.avroexcel.ImportOptions;
+import org.fanchuo.avroexcel.TestOutput;
+import org.fanchuo.avroexcel.encoder.ExcelSchemaException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ExcelSheetReaderTest {
+  @BeforeEach
+  void setUp() throws IOException {
+    TestOutput.reset();
+  }
+
+  private static CellType[] cellTypes(File excelFile, boolean evaluateFormulas)
+      throws IOException {
+    ExcelSheetReader excelSheetReader;
+    try (InputStream is = new FileInputStream(excelFile)) {
+      excelSheetReader = ExcelSheetReader.loadSheet(is, "tab", evaluateFormulas);
+    }
+    CellType[] cellTypes = new CellType[3];
+    for (int i = 0; i < cellTypes.length; i++) {
+      cellTypes[i] = ExcelSheetReader.cellType(excelSheetReader.getCell(i, 1));
+    }
+    return cellTypes;
+  }
+
+  // a file written without evaluating its formulas has no cached result to read
+  @Test
+  void formulaCells() throws Exception {
+    File excelFile = TestOutput.file("formulas.xlsx");
+    File cachedFile = TestOutput.file("formulas_cached.xlsx");
+    try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+      Sheet sheet = workbook.createSheet("tab");
+      Row header = sheet.createRow(0);
+      header.createCell(0).setCellValue("amount");
+      header.createCell(1).setCellValue("label");
+      header.createCell(2).setCellValue("flag");
+      Row values = sheet.createRow(1);
+      values.createCell(0).setCellFormula("2*21");
+      values.createCell(1).setCellFormula("\"a\"&\"b\"");
+      values.createCell(2).setCellFormula("1=1");
+      try (OutputStream os = new FileOutputStream(excelFile)) {
+        workbook.write(os);
+      }
+      workbook.getCreationHelper().createFormulaEvaluator().evaluateAll();
+      try (OutputStream os = new FileOutputStream(cachedFile)) {
+        workbook.write(os);
+      }
+    }
+    Schema schema =
+        Schema.createRecord(
+            "test",
+            null,
+            null,
+            false,
+            Arrays.asList(
+                new Schema.Field("amount", Schema.create(Schema.Type.LONG)),
+                new Schema.Field("label", Schema.create(Schema.Type.STRING)),
+                new Schema.Field("flag", Schema.create(Schema.Type.BOOLEAN))));
+    CellType[] expectedTypes = {CellType.NUMERIC, CellType.STRING, CellType.BOOLEAN};
+    String expected = "[{\"amount\": 42, \"label\": \"ab\", \"flag\": true}]";
+    File backAvroFile = TestOutput.file("back_formulas.avro");
+
+    assertArrayEquals(expectedTypes, cellTypes(cachedFile, false));
+    ExcelToAvroConverter.convert(cachedFile, backAvroFile, "tab", 0, 0, schema);
+    assertEquals(expected, AvroDescriptor.convert(backAvroFile).toString());
+    assertThrows(
+        ExcelSchemaException.class,
+        () -> ExcelToAvroConverter.convert(excelFile, backAvroFile, "tab", 0, 0, schema));
+    assertArrayEquals(expectedTypes, cellTypes(excelFile, true));
+    ImportOptions importOptions = new ImportOptions().withEvaluateFormulas(true);
+    ExcelToAvroConverter.convert(excelFile, backAvroFile, "tab", 0, 0, schema, importOptions);
+    assertEquals(expected, AvroDescriptor.convert(backAvroFile).toString());
+  }
+
+  // equal shared strings are the same String, the cache is indexed by the shared string
+  @Test
+  void sharedStrings() throws Exception {
+    File excelFile = TestOutput.file("shared.xlsx");
+    try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+      Sheet sheet = workbook.createSheet("tab");
+      for (int i = 0; i < 4; i++) {
+        sheet.createRow(i).createCell(0).setCellValue(i % 2 == 0 ? "FR" : "DE");
+      }
+      sheet.getRow(0).createCell(1).setCellValue("FR");
+      try (OutputStream os = new FileOutputStream(excelFile)) {
+        workbook.write(os);
+      }
+    }
+    ExcelSheetReader excelSheetReader;
+    try (InputStream is = new FileInputStream(excelFile)) {
+      excelSheetReader = ExcelSheetReader.loadSheet(is, "tab");
+    }
+
+    String first = excelSheetReader.getStringValue(excelSheetReader.getCell(0, 0));
+    assertEquals("FR", first);
+    String second = excelSheetReader.getStringValue(excelSheetReader.getCell(0, 1));
+    assertEquals("DE", second);
+    assertSame(first, excelSheetReader.getStringValue(excelSheetReader.getCell(0, 2)));
+    assertSame(second, excelSheetReader.getStringValue(excelSheetReader.getCell(0, 3)));
+    assertSame(first, excelSheetReader.getStringValue(excelSheetReader.getCell(1, 0)));
+  }
+}
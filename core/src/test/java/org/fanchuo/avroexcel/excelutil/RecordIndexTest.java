@@ -0,0 +1,123 @@
+package org.fanchuo.avroexcel.excelutil;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.avro.generic.GenericRecord;
+import org.fanchuo.avroexcel.AvroToExcelConverter;
+import org.fanchuo.avroexcel.ExcelToAvroConverter;
+import org.fanchuo.avroexcel.ExportOptions;
+import org.fanchuo.avroexcel.SampleUsers;
+import org.fanchuo.avroexcel.TestOutput;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class RecordIndexTest {
+  @BeforeEach
+  void setUp() throws IOException {
+    TestOutput.reset();
+  }
+
+  // every 10th record, each record takes 3 rows below a header on row 2
+  private static RecordIndex every10th(int entries) {
+    RecordIndex recordIndex = new RecordIndex();
+    for (int i = 0; i < entries; i++) {
+      recordIndex.add(10L * i, 3 + 30 * i);
+    }
+    return recordIndex;
+  }
+
+  @Test
+  void empty() {
+    RecordIndex recordIndex = new RecordIndex();
+    assertEquals(0, recordIndex.size());
+    assertEquals(-1, recordIndex.floorRecord(0));
+    assertEquals(-1, recordIndex.floorRow(0));
+  }
+
+  @Test
+  void exactHits() {
+    RecordIndex recordIndex = every10th(5);
+    for (int i = 0; i < 5; i++) {
+      assertEquals(i, recordIndex.floorRecord(recordIndex.getRecord(i)));
+      assertEquals(i, recordIndex.floorRow(recordIndex.getRow(i)));
+    }
+  }
+
+  @Test
+  void betweenEntries() {
+    RecordIndex recordIndex = every10th(5);
+    assertEquals(1, recordIndex.floorRecord(19));
+    assertEquals(2, recordIndex.floorRecord(21));
+    assertEquals(1, recordIndex.floorRow(62));
+    assertEquals(2, recordIndex.floorRow(64));
+  }
+
+  @Test
+  void beforeFirstEntry() {
+    RecordIndex recordIndex = new RecordIndex();
+    recordIndex.add(5, 20);
+    assertEquals(-1, recordIndex.floorRecord(4));
+    assertEquals(-1, recordIndex.floorRow(19));
+    assertEquals(0, recordIndex.floorRecord(5));
+    assertEquals(0, recordIndex.floorRow(20));
+  }
+
+  @Test
+  void afterLastEntry() {
+    RecordIndex recordIndex = every10th(5);
+    assertEquals(4, recordIndex.floorRecord(Long.MAX_VALUE));
+    assertEquals(4, recordIndex.floorRow(Integer.MAX_VALUE));
+  }
+
+  @Test
+  void growsPastInitialCapacity() {
+    RecordIndex recordIndex = every10th(100);
+    assertEquals(100, recordIndex.size());
+    assertEquals(990, recordIndex.getRecord(99));
+    assertEquals(2973, recordIndex.getRow(99));
+    // the unused tail of the arrays holds zeros, the search must stop at size
+    assertEquals(99, recordIndex.floorRecord(995));
+    assertEquals(99, recordIndex.floorRow(3000));
+  }
+
+  private static List<String> names(List<GenericRecord> records) {
+    List<String> names = new ArrayList<>();
+    for (GenericRecord record : records) {
+      names.add(record.get("name").toString());
+    }
+    return names;
+  }
+
+  @Test
+  void exportedIndex() throws Exception {
+    File avroFile = SampleUsers.avroFile("users.avro");
+    File excelFile = TestOutput.file("users_indexed.xlsx");
+
+    AvroToExcelConverter.convert(
+        avroFile, excelFile, null, 1, 2, new ExportOptions().withRecordIndex(2));
+
+    try (InputStream is = new FileInputStream(excelFile)) {
+      RecordIndex recordIndex = ExcelSheetReader.loadSheet(is, "tab").getMetadata().recordIndex;
+      // every other record: Alyssa on row 8 and Charlie after the 4 rows of Ben
+      assertEquals(2, recordIndex.size());
+      assertEquals(0, recordIndex.getRecord(0));
+      assertEquals(7, recordIndex.getRow(0));
+      assertEquals(2, recordIndex.getRecord(1));
+      assertEquals(15, recordIndex.getRow(1));
+    }
+    assertEquals(
+        List.of("Alyssa", "Ben", "Charlie"),
+        names(ExcelToAvroConverter.readRange(excelFile, null, 0, 3)));
+    List<GenericRecord> range = ExcelToAvroConverter.readRange(excelFile, null, 1, 3);
+    assertEquals(List.of("Ben", "Charlie"), names(range));
+    assertEquals("red", ((GenericRecord) range.get(0).get("favorite")).get("color").toString());
+    assertEquals(List.of("Charlie"), names(ExcelToAvroConverter.readRange(excelFile, null, 2, 9)));
+    assertTrue(ExcelToAvroConverter.readRange(excelFile, null, 3, 4).isEmpty());
+  }
+}
@@ -0,0 +1,132 @@
+package org.fanchuo.avroexcel.excelutil;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.apache.avro.Schema;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.fanchuo.avroexcel.AvroDescriptor;
+import org.fanchuo.avroexcel.AvroToExcelConverter;
+import org.fanchuo.avroexcel.ExcelToAvroConverter;
+import org.fanchuo.avroexcel.ExportOptions;
+import org.fanchuo.avroexcel.SampleUsers;
+import org.fanchuo.avroexcel.TestOutput;
+import org.fanchuo.avroexcel.encoder.ExcelSchemaException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class SheetMetadataTest {
+  private static final List<String> NAMES = List.of("Alyssa", "Ben", "Charlie");
+
+  @BeforeEach
+  void setUp() throws IOException {
+    TestOutput.reset();
+  }
+
+  private static SheetMetadata metadata(File excelFile) throws IOException {
+    try (InputStream is = new FileInputStream(excelFile)) {
+      return ExcelSheetReader.loadSheet(is, "tab").getMetadata();
+    }
+  }
+
+  @Test
+  void embeddedSchema() throws Exception {
+    Schema schema = SampleUsers.schema();
+    File avroFile = SampleUsers.avroFile("users.avro");
+    File excelFile = TestOutput.file("users_embedded.xlsx");
+
+    AvroToExcelConverter.convert(avroFile, excelFile, null, 1, 2);
+
+    SheetMetadata metadata = metadata(excelFile);
+    assertEquals("tab", metadata.sheetName);
+    assertEquals(1, metadata.col);
+    assertEquals(2, metadata.row);
+    assertEquals(schema, metadata.schema);
+    assertNull(metadata.recordIndex);
+    try (InputStream is = new FileInputStream(excelFile);
+        XSSFWorkbook workbook = new XSSFWorkbook(is)) {
+      assertTrue(workbook.isSheetVeryHidden(workbook.getSheetIndex(SheetMetadata.SHEET_NAME)));
+    }
+    File expectedFile = TestOutput.file("back_users_given_schema.avro");
+    ExcelToAvroConverter.convert(excelFile, expectedFile, "tab", 1, 2, schema);
+    File backAvroFile = TestOutput.file("back_users_embedded.avro");
+    ExcelToAvroConverter.convert(excelFile, backAvroFile, null);
+    assertEquals(AvroDescriptor.convert(expectedFile), AvroDescriptor.convert(backAvroFile));
+    assertEquals(NAMES, AvroDescriptor.values(backAvroFile, "name"));
+
+    File plainFile = TestOutput.file("tests.xlsx");
+    try (InputStream is = SheetMetadataTest.class.getResourceAsStream("/tests.xlsx")) {
+      Files.copy(is, plainFile.toPath());
+    }
+    assertThrows(
+        ExcelSchemaException.class,
+        () -> ExcelToAvroConverter.convert(plainFile, backAvroFile, "Test1"));
+  }
+
+  @Test
+  void withoutMetadataSheet() throws Exception {
+    File avroFile = SampleUsers.avroFile("users.avro");
+    File excelFile = TestOutput.file("users_plain.xlsx");
+
+    AvroToExcelConverter.convert(
+        avroFile, excelFile, null, 1, 2, new ExportOptions().withMetadataSheet(false));
+
+    try (InputStream is = new FileInputStream(excelFile);
+        XSSFWorkbook workbook = new XSSFWorkbook(is)) {
+      assertNull(workbook.getSheet(SheetMetadata.SHEET_NAME));
+      assertEquals(1, workbook.getNumberOfSheets());
+    }
+    assertNull(metadata(excelFile));
+    File backAvroFile = TestOutput.file("back_users_plain.avro");
+    assertThrows(
+        ExcelSchemaException.class,
+        () -> ExcelToAvroConverter.convert(excelFile, backAvroFile, "tab"));
+    // the data is the same, the schema and origin must be given
+    ExcelToAvroConverter.convert(excelFile, backAvroFile, "tab", 1, 2, SampleUsers.schema());
+    assertEquals(NAMES, AvroDescriptor.values(backAvroFile, "name"));
+  }
+
+  @Test
+  void malformedMetadataSheet() throws Exception {
+    Schema schema = SampleUsers.schema();
+    File avroFile = SampleUsers.avroFile("users.avro");
+    File excelFile = TestOutput.file("users_malformed.xlsx");
+    AvroToExcelConverter.convert(avroFile, excelFile, null, 1, 2);
+    XSSFWorkbook workbook;
+    try (InputStream is = new FileInputStream(excelFile)) {
+      workbook = new XSSFWorkbook(is);
+    }
+    // the schema is cut short
+    workbook.getSheet(SheetMetadata.SHEET_NAME).getRow(1).getCell(3).setCellValue("{\"type\": ");
+    try (OutputStream os = new FileOutputStream(excelFile)) {
+      workbook.write(os);
+    }
+    workbook.close();
+
+    // the metadata is only read when the schema and origin are not given
+    File backAvroFile = TestOutput.file("back_users_malformed.avro");
+    ExcelToAvroConverter.convert(excelFile, backAvroFile, "tab", 1, 2, schema);
+    assertEquals(NAMES, AvroDescriptor.values(backAvroFile, "name"));
+    List<String> names =
+        ExcelToAvroConverter.stream(excelFile, "tab", 1, 2, schema)
+            .parallel()
+            .map(r -> r.get("name").toString())
+            .collect(Collectors.toList());
+    assertEquals(NAMES, names);
+    IllegalStateException e = assertThrows(IllegalStateException.class, () -> metadata(excelFile));
+    assertTrue(e.getMessage().startsWith("Malformed metadata in sheet _avroexcel, row 2"));
+    ExcelSchemaException schemaException =
+        assertThrows(
+            ExcelSchemaException.class,
+            () -> ExcelToAvroConverter.convert(excelFile, backAvroFile, "tab"));
+    assertEquals(e.getMessage(), schemaException.getMessage());
+  }
+}
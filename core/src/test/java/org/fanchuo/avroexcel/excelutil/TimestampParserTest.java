@@ -0,0 +1,60 @@
+package org.fanchuo.avroexcel.excelutil;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Instant;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+public class TimestampParserTest {
+  @Test
+  void parsesLikeInstant() {
+    for (String text :
+        Arrays.asList(
+            "2025-01-01T00:00:00Z",
+            "2024-02-29T23:59:59.5Z",
+            "1969-12-31T23:59:59.123456789Z",
+            "0001-01-01T00:00:00Z",
+            "2025-01-01T10:15:30.Z")) {
+      assertEquals(Instant.parse(text), TimestampParser.parse(text), text);
+    }
+  }
+
+  @Test
+  void lowercaseSeparators() {
+    // ISO_INSTANT parses case insensitively
+    Instant expected = Instant.parse("2025-01-01T10:15:30Z");
+    for (String text :
+        Arrays.asList("2025-01-01t10:15:30z", "2025-01-01T10:15:30z", "2025-01-01t10:15:30Z")) {
+      assertEquals(expected, TimestampParser.parse(text), text);
+    }
+  }
+
+  @Test
+  void formatterFallback() {
+    assertEquals(
+        Instant.parse("2025-01-02T00:00:00Z"), TimestampParser.parse("2025-01-01T24:00:00Z"));
+    assertEquals(
+        Instant.parse("2025-06-30T23:59:59Z"), TimestampParser.parse("2025-06-30T23:59:60Z"));
+    assertEquals(
+        Instant.parse("+12025-01-01T00:00:00Z"), TimestampParser.parse("+12025-01-01T00:00:00Z"));
+  }
+
+  @Test
+  void rejected() {
+    for (String text :
+        Arrays.asList(
+            "",
+            "Lorem ipsum dolor sit amet",
+            "2025-01-01",
+            "2025-02-29T00:00:00Z",
+            "2025-13-01T00:00:00Z",
+            "2025-01-01T10:60:00Z",
+            "2025-01-01 00:00:00Z",
+            "2025-01-01T00:00:00",
+            "2025-01-01T00:00:00X",
+            "2025-01-01T00:00:00.1234567891Z")) {
+      assertNull(TimestampParser.parse(text), text);
+    }
+  }
+}
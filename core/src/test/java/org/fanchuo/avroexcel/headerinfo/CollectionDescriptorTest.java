@@ -0,0 +1,117 @@
+package org.fanchuo.avroexcel.headerinfo;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import org.apache.avro.Schema;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.fanchuo.avroexcel.AvroDescriptor;
+import org.fanchuo.avroexcel.AvroToExcelConverter;
+import org.fanchuo.avroexcel.ExcelToAvroConverter;
+import org.fanchuo.avroexcel.SampleUsers;
+import org.fanchuo.avroexcel.TestOutput;
+import org.fanchuo.avroexcel.excelutil.ExcelSheetReader;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class CollectionDescriptorTest {
+  @BeforeEach
+  void setUp() throws IOException {
+    TestOutput.reset();
+  }
+
+  private static int collectionSize(Object marker, int mergedRows) throws Exception {
+    try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+      Sheet sheet = workbook.createSheet("tab");
+      for (int r = 0; r < 5; r++) sheet.createRow(r);
+      if (marker instanceof String) {
+        sheet.getRow(0).createCell(0).setCellValue((String) marker);
+      } else if (marker instanceof Number) {
+        sheet.getRow(0).createCell(0).setCellValue(((Number) marker).doubleValue());
+      }
+      if (mergedRows > 1) sheet.addMergedRegion(new CellRangeAddress(0, mergedRows - 1, 0, 0));
+      return CollectionDescriptor.extractCollectionSize(new ExcelSheetReader(sheet), 0, 0);
+    }
+  }
+
+  @Test
+  void mergedMarker() throws Exception {
+    assertEquals(3, collectionSize("*", 3));
+    assertEquals(1, collectionSize("#", 1));
+  }
+
+  @Test
+  void flatMarker() throws Exception {
+    assertEquals("*3", CollectionDescriptor.flatMarker("*", 3));
+    assertEquals(3, collectionSize(CollectionDescriptor.flatMarker("*", 3), 1));
+    assertEquals(12, collectionSize(CollectionDescriptor.flatMarker("#", 12), 1));
+  }
+
+  // a number is not a row count, whatever the layout: sheets made by hand or by the merged layout
+  // may hold the size of the collection in a merged marker
+  @Test
+  void numericMergedMarker() throws Exception {
+    assertEquals(4, collectionSize(2, 4));
+    assertEquals(1, collectionSize(2, 1));
+  }
+
+  @Test
+  void otherText() throws Exception {
+    assertEquals(2, collectionSize("*x", 2));
+    assertEquals(1, collectionSize("3", 1));
+  }
+
+  @Test
+  void noMarker() throws Exception {
+    assertEquals(-1, collectionSize(null, 1));
+    assertEquals(-1, collectionSize(null, 3));
+  }
+
+  // the merged markers of a hand-made sheet may hold the size of the collection
+  @Test
+  void numericMarkersInAnExport() throws Exception {
+    Schema schema = SampleUsers.schema();
+    File avroFile = SampleUsers.avroFile("users.avro");
+    File excelFile = TestOutput.file("users_merged_layout.xlsx");
+    AvroToExcelConverter.convert(avroFile, excelFile, null, 1, 2);
+    File backAvroFile = TestOutput.file("back_users_merged_layout.avro");
+    ExcelToAvroConverter.convert(excelFile, backAvroFile, "tab", 1, 2, schema);
+
+    XSSFWorkbook workbook;
+    try (InputStream is = new FileInputStream(excelFile)) {
+      workbook = new XSSFWorkbook(is);
+    }
+    Sheet sheet = workbook.getSheet("tab");
+    int replaced = 0;
+    for (CellRangeAddress region : sheet.getMergedRegions()) {
+      // the records start on row 8
+      if (region.getFirstRow() < 7) continue;
+      Cell cell = sheet.getRow(region.getFirstRow()).getCell(region.getFirstColumn());
+      if (!List.of("*", "#").contains(cell.toString())) continue;
+      // not a row count, the merged region still gives the rows of the collection
+      cell.setCellValue(1);
+      replaced++;
+    }
+    // the maps and lists of Alyssa and Ben that take several rows
+    assertEquals(8, replaced);
+    try (OutputStream os = new FileOutputStream(excelFile)) {
+      workbook.write(os);
+    }
+    workbook.close();
+
+    File numericAvroFile = TestOutput.file("back_users_numeric_markers.avro");
+    ExcelToAvroConverter.convert(excelFile, numericAvroFile, "tab", 1, 2, schema);
+    assertEquals(AvroDescriptor.convert(backAvroFile), AvroDescriptor.convert(numericAvroFile));
+    assertEquals(
+        List.of("Alyssa", "Ben", "Charlie"), AvroDescriptor.values(numericAvroFile, "name"));
+  }
+}
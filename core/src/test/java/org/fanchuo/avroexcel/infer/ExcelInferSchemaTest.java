@@ -0,0 +1,71 @@
+package org.fanchuo.avroexcel.infer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.avro.Schema;
+import org.fanchuo.avroexcel.AvroDescriptor;
+import org.fanchuo.avroexcel.AvroToExcelConverter;
+import org.fanchuo.avroexcel.ExcelToAvroConverter;
+import org.fanchuo.avroexcel.ExportOptions;
+import org.fanchuo.avroexcel.SampleUsers;
+import org.fanchuo.avroexcel.TestOutput;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ExcelInferSchemaTest {
+  @BeforeEach
+  void setUp() throws IOException {
+    TestOutput.reset();
+  }
+
+  private static List<String> fieldNames(Schema record) {
+    List<String> names = new ArrayList<>();
+    for (Schema.Field field : record.getFields()) {
+      names.add(field.name());
+    }
+    return names;
+  }
+
+  @Test
+  void sameWorkbookTwice() throws Exception {
+    File avroFile = SampleUsers.avroFile("users.avro");
+    File excelFile = TestOutput.file("users.xlsx");
+    AvroToExcelConverter.convert(avroFile, excelFile, null, 1, 2);
+    Schema single;
+    try (InputStream is = new FileInputStream(excelFile)) {
+      single = ExcelInferSchema.inferSchema(is, "tab", 1, 2, 1);
+    }
+
+    Schema many = ExcelInferSchema.inferSchema(List.of(excelFile, excelFile), "tab", 1, 2, 2);
+
+    assertEquals(single, many);
+    assertEquals(fieldNames(SampleUsers.schema()), fieldNames(many));
+  }
+
+  // Ben's record is only in the second workbook, the merged schema reads both of them
+  @Test
+  void workbooksAreMerged() throws Exception {
+    File avroFile = SampleUsers.avroFile("users.avro");
+    File filteredFile = TestOutput.file("users_filtered.xlsx");
+    AvroToExcelConverter.convert(
+        avroFile, filteredFile, null, 1, 2, new ExportOptions().withFilter("name!=Ben"));
+    File excelFile = TestOutput.file("users.xlsx");
+    AvroToExcelConverter.convert(avroFile, excelFile, null, 1, 2);
+
+    Schema merged = ExcelInferSchema.inferSchema(List.of(filteredFile, excelFile), "tab", 1, 2, 2);
+
+    File backFiltered = TestOutput.file("back_filtered.avro");
+    ExcelToAvroConverter.convert(filteredFile, backFiltered, "tab", 1, 2, merged);
+    assertEquals(List.of("Alyssa", "Charlie"), AvroDescriptor.values(backFiltered, "name"));
+    File back = TestOutput.file("back_users.avro");
+    ExcelToAvroConverter.convert(excelFile, back, "tab", 1, 2, merged);
+    assertEquals(List.of("Alyssa", "Ben", "Charlie"), AvroDescriptor.values(back, "name"));
+    assertEquals(List.of("null", "red", "blue"), AvroDescriptor.values(back, "favorite.color"));
+  }
+}
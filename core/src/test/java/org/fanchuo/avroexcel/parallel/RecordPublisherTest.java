@@ -0,0 +1,203 @@
+package org.fanchuo.avroexcel.parallel;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class RecordPublisherTest {
+  // counts from 0 to size - 1, fails on the read of failAt
+  private static class CountingSource implements RecordPublisher.Source<Integer> {
+    private final int size;
+    private final int failAt;
+    private int reads;
+    private boolean closed;
+
+    CountingSource(int size, int failAt) {
+      this.size = size;
+      this.failAt = failAt;
+    }
+
+    @Override
+    public Integer read() throws IOException {
+      if (reads == failAt) throw new IOException("Broken record " + reads);
+      return reads < size ? reads++ : null;
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+  }
+
+  private static class Recorder implements Flow.Subscriber<Integer> {
+    final List<Integer> items = new ArrayList<>();
+    final CountDownLatch terminated = new CountDownLatch(1);
+    Flow.Subscription subscription;
+    Throwable error;
+    boolean completed;
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+      this.subscription = subscription;
+    }
+
+    @Override
+    public void onNext(Integer item) {
+      items.add(item);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      error = throwable;
+      terminated.countDown();
+    }
+
+    @Override
+    public void onComplete() {
+      completed = true;
+      terminated.countDown();
+    }
+  }
+
+  // signals are delivered on the calling thread
+  private static Recorder subscribe(CountingSource source) {
+    Recorder recorder = new Recorder();
+    new RecordPublisher<>(source, Runnable::run).subscribe(recorder);
+    return recorder;
+  }
+
+  @Test
+  void readsOnDemand() {
+    CountingSource source = new CountingSource(5, -1);
+    Recorder recorder = subscribe(source);
+    assertEquals(0, source.reads);
+
+    recorder.subscription.request(2);
+    assertEquals(List.of(0, 1), recorder.items);
+    assertEquals(2, source.reads);
+    assertFalse(recorder.completed);
+
+    recorder.subscription.request(Long.MAX_VALUE);
+    assertEquals(List.of(0, 1, 2, 3, 4), recorder.items);
+    assertTrue(recorder.completed);
+    assertTrue(source.closed);
+  }
+
+  @Test
+  void cancelStopsReading() {
+    CountingSource source = new CountingSource(5, -1);
+    Recorder recorder = subscribe(source);
+    recorder.subscription.request(1);
+    recorder.subscription.cancel();
+    recorder.subscription.request(3);
+
+    assertEquals(List.of(0), recorder.items);
+    assertEquals(1, source.reads);
+    assertTrue(source.closed);
+    assertFalse(recorder.completed);
+    assertNull(recorder.error);
+  }
+
+  @Test
+  void cancelFromOnNext() {
+    CountingSource source = new CountingSource(5, -1);
+    Recorder recorder =
+        new Recorder() {
+          @Override
+          public void onNext(Integer item) {
+            super.onNext(item);
+            if (item == 1) subscription.cancel();
+          }
+        };
+    new RecordPublisher<>(source, Runnable::run).subscribe(recorder);
+    recorder.subscription.request(Long.MAX_VALUE);
+
+    assertEquals(List.of(0, 1), recorder.items);
+    assertTrue(source.closed);
+    assertFalse(recorder.completed);
+  }
+
+  @Test
+  void readErrorIsSignalled() {
+    CountingSource source = new CountingSource(5, 2);
+    Recorder recorder = subscribe(source);
+    recorder.subscription.request(10);
+
+    assertEquals(List.of(0, 1), recorder.items);
+    assertInstanceOf(IOException.class, recorder.error);
+    assertEquals("Broken record 2", recorder.error.getMessage());
+    assertFalse(recorder.completed);
+    assertTrue(source.closed);
+    // nothing is read after the error
+    recorder.subscription.request(10);
+    assertEquals(2, source.reads);
+  }
+
+  @Test
+  void nonPositiveRequest() {
+    CountingSource source = new CountingSource(5, -1);
+    Recorder recorder = subscribe(source);
+    recorder.subscription.request(0);
+
+    assertInstanceOf(IllegalArgumentException.class, recorder.error);
+    assertEquals(0, source.reads);
+    assertTrue(source.closed);
+  }
+
+  @Test
+  void subscribedOnce() {
+    CountingSource source = new CountingSource(5, -1);
+    RecordPublisher<Integer> publisher = new RecordPublisher<>(source, Runnable::run);
+    Recorder first = new Recorder();
+    publisher.subscribe(first);
+    Recorder second = new Recorder();
+    publisher.subscribe(second);
+
+    assertInstanceOf(IllegalStateException.class, second.error);
+    // the second subscription is inert and leaves the first one alone
+    second.subscription.request(1);
+    assertEquals(0, source.reads);
+    first.subscription.request(Long.MAX_VALUE);
+    assertEquals(5, first.items.size());
+    assertTrue(first.completed);
+  }
+
+  @Test
+  void concurrentRequests() throws Exception {
+    CountingSource source = new CountingSource(10000, -1);
+    Recorder recorder = new Recorder();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      new RecordPublisher<>(source, executor).subscribe(recorder);
+      List<Thread> threads = new ArrayList<>();
+      for (int t = 0; t < 4; t++) {
+        Thread thread =
+            new Thread(
+                () -> {
+                  for (int i = 0; i < 2500; i++) recorder.subscription.request(1);
+                });
+        threads.add(thread);
+        thread.start();
+      }
+      for (Thread thread : threads) thread.join();
+      recorder.subscription.request(1);
+      assertTrue(recorder.terminated.await(30, TimeUnit.SECONDS));
+    } finally {
+      executor.shutdown();
+    }
+    // the drain loop runs on one thread at a time, so the items arrive in order
+    assertTrue(recorder.completed);
+    assertEquals(10000, recorder.items.size());
+    for (int i = 0; i < recorder.items.size(); i++) {
+      assertEquals(i, recorder.items.get(i).intValue());
+    }
+  }
+}